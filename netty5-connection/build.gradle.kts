@@ -8,6 +8,7 @@ dependencies {
     compileOnly(libs.gson)
     implementation(libs.netty5.all)
     annotationProcessor(libs.utility.lombok)
+    annotationProcessor(project(":netty5-processor"))
 }
 
 publishing {
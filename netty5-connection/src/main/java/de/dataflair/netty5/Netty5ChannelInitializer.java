@@ -18,28 +18,60 @@ package de.dataflair.netty5;
  * limitations under the License.
  */
 
+import de.dataflair.netty5.common.codec.FileTransferHandler;
+import de.dataflair.netty5.common.codec.FrameChunkHandler;
+import de.dataflair.netty5.common.codec.FrameCompressionHandler;
+import de.dataflair.netty5.common.codec.OutboundQueueHandler;
+import de.dataflair.netty5.common.codec.PacketBundler;
 import de.dataflair.netty5.common.codec.PacketDecoder;
 import de.dataflair.netty5.common.codec.PacketEncoder;
 import io.netty5.channel.Channel;
 import io.netty5.channel.ChannelInitializer;
+import io.netty5.channel.ChannelOption;
 import io.netty5.channel.SimpleChannelInboundHandler;
+import io.netty5.channel.WriteBufferWaterMark;
 import io.netty5.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty5.handler.codec.LengthFieldPrepender;
+import io.netty5.handler.flush.FlushConsolidationHandler;
+import org.jetbrains.annotations.NotNull;
 
 public abstract class Netty5ChannelInitializer extends ChannelInitializer<Channel> {
     private final Netty5ClientChannel.Identity identity;
+    private final Netty5ChannelOptions options;
 
     public Netty5ChannelInitializer(Netty5ClientChannel.Identity identity) {
+        this(identity, Netty5ChannelOptions.DEFAULT);
+    }
+
+    public Netty5ChannelInitializer(Netty5ClientChannel.Identity identity, @NotNull Netty5ChannelOptions options) {
         this.identity = identity;
+        this.options = options;
     }
 
     @Override
     protected void initChannel(Channel channel) throws Exception {
-        channel.pipeline()
-                .addLast(new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, Integer.BYTES, 0, Integer.BYTES))
-                .addLast(new PacketDecoder(identity))
+        channel.setOption(ChannelOption.WRITE_BUFFER_WATER_MARK,
+                new WriteBufferWaterMark(options.writeBufferLowWaterMark(), options.writeBufferHighWaterMark()));
+        var pipeline = channel.pipeline()
+                // in front of the framing, as it writes complete frames itself
+                .addLast(new FileTransferHandler(options.fileSegmentSize()))
+                .addLast(new LengthFieldBasedFrameDecoder(options.maxFrameLength(), 0, Integer.BYTES, 0, Integer.BYTES))
                 .addLast(new LengthFieldPrepender(Integer.BYTES))
-                .addLast(new PacketEncoder(identity))
+                // between the framing and the packet codecs in both directions
+                .addLast(new FrameCompressionHandler(options.maxFrameLength()))
+                // chunks are compressed one by one, so no compressed frame exceeds the chunk size either
+                .addLast(new FrameChunkHandler(options.chunkSize(), options.maxFrameLength(), options.maxPayloadLength()))
+                .addLast(new PacketDecoder(identity))
+                .addLast(new PacketEncoder(identity));
+        if (options.maxBundlePackets() > 1) {
+            pipeline.addLast(new PacketBundler(options.maxBundlePackets()));
+        }
+        if (options.flushConsolidation() > 0) {
+            // behind the bundler, so the coalesced flush closes one bundle for all packets of the window
+            pipeline.addLast(new FlushConsolidationHandler(options.flushConsolidation(),
+                    options.consolidateOutsideRead()));
+        }
+        pipeline.addLast(new OutboundQueueHandler(options.outboundPolicy(), options.maxQueuedPackets(), options.blockTimeoutMillis()))
                 .addLast(handler());
     }
 
@@ -0,0 +1,174 @@
+package de.dataflair.netty5;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import de.dataflair.netty5.common.packet.Netty5PacketTransmitter;
+import de.dataflair.netty5.common.packet.QueryLimiter;
+import io.netty5.handler.flush.FlushConsolidationHandler;
+import lombok.Builder;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Pipeline settings of the channels of a {@link Netty5Component}. Server and client are configured separately.
+ */
+@Getter
+@Builder(toBuilder = true)
+public final class Netty5ChannelOptions {
+    /**
+     * Options which are used if nothing else was configured.
+     */
+    public static final Netty5ChannelOptions DEFAULT = builder().build();
+
+    /**
+     * Number of flushes which are coalesced into a single flush of the socket, {@code 0} disables the consolidation,
+     * e.g. {@link FlushConsolidationHandler#DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES}. Pending writes are flushed at the
+     * latest at the end of the current read, so answers to a batch of received packets go out together. Disabled by
+     * default, as every held back flush adds latency.
+     */
+    @Builder.Default
+    private final int flushConsolidation = 0;
+    /**
+     * Whether flushes outside of a read are coalesced as well, if the consolidation is enabled. They are delayed
+     * until the end of the current event loop tick, so packets sent from other threads share a syscall.
+     */
+    @Builder.Default
+    private final boolean consolidateOutsideRead = false;
+    /**
+     * Maximum number of packets which are bundled into a single frame per flush window, values below {@code 2}
+     * disable the bundling. Bundles are sent with {@link Netty5ClientChannel#sendBundle(java.util.List)} regardless.
+     */
+    @Builder.Default
+    private final int maxBundlePackets = 0;
+    /**
+     * Maximum length of a single inbound frame. Longer frames are rejected before they are buffered.
+     */
+    @Builder.Default
+    private final int maxFrameLength = 8 * 1024 * 1024;
+    /**
+     * Size of the chunks into which larger outbound frames are split, {@code 0} disables the chunking.
+     * Must not exceed the maximum frame length of the peer.
+     */
+    @Builder.Default
+    private final int chunkSize = 256 * 1024;
+    /**
+     * Maximum length of an inbound frame which is reassembled from chunks.
+     */
+    @Builder.Default
+    private final long maxPayloadLength = 256L * 1024 * 1024;
+    /**
+     * Size of the segments in which files are sent, see {@link Netty5ClientChannel#sendFile(java.nio.file.Path, String, long)}.
+     * Must not exceed the maximum frame length of the peer.
+     */
+    @Builder.Default
+    private final int fileSegmentSize = 4 * 1024 * 1024;
+    /**
+     * Outbound bytes below which a channel becomes writable again.
+     */
+    @Builder.Default
+    private final int writeBufferLowWaterMark = 32 * 1024;
+    /**
+     * Outbound bytes above which a channel is no longer writable, so further packets are queued.
+     */
+    @Builder.Default
+    private final int writeBufferHighWaterMark = 64 * 1024;
+    /**
+     * Maximum number of packets which are queued per connection while the channel is not writable.
+     */
+    @Builder.Default
+    private final int maxQueuedPackets = 4096;
+    /**
+     * Behaviour of a connection which is not writable.
+     */
+    @Builder.Default
+    private final @NotNull OutboundPolicy outboundPolicy = OutboundPolicy.BLOCK;
+    /**
+     * Maximum time a sender waits for the channel to become writable with {@link OutboundPolicy#BLOCK}. Packets
+     * which are still not writable afterwards fail instead of being sent, {@code 0} waits without a limit.
+     */
+    @Builder.Default
+    private final long blockTimeoutMillis = 10_000;
+
+    /**
+     * Timeout of queries which are sent without an explicit one.
+     */
+    @Builder.Default
+    private final long queryTimeoutMillis = Netty5PacketTransmitter.DEFAULT_QUERY_TIMEOUT_MILLIS;
+    /**
+     * Maximum number of queries a connection has in flight, {@code 0} for no limit. Caps the adaptive limit
+     * if {@link #adaptiveQueryLimit} is enabled.
+     */
+    @Builder.Default
+    private final int maxInFlightQueries = 0;
+    /**
+     * Whether the query limit of a connection adapts to the latency of its responses, see {@link QueryLimiter}.
+     */
+    @Builder.Default
+    private final boolean adaptiveQueryLimit = false;
+    /**
+     * Number of queries beyond the limit which wait for a free slot, further queries are rejected right away.
+     */
+    @Builder.Default
+    private final int maxQueuedQueries = 0;
+    /**
+     * Executor of the listener, responder and query callbacks, e.g. {@link Netty5ChannelUtils#VIRTUAL_THREADS}, so
+     * callbacks may block without stalling the event loop. Callbacks of a connection may run concurrently and in a
+     * different order than their packets arrived then. Received packets are released once their callbacks
+     * are done, so packets which are kept longer, e.g. query results, have to read their content within their
+     * constructor. {@code null} runs the callbacks on the event loop.
+     */
+    @Builder.Default
+    private final @Nullable Executor callbackExecutor = null;
+
+    /**
+     * Creates the query limiter of a new connection.
+     *
+     * @return the limiter
+     */
+    public @NotNull QueryLimiter newQueryLimiter() {
+        return new QueryLimiter(this.maxInFlightQueries, this.adaptiveQueryLimit, this.maxQueuedQueries);
+    }
+
+    /**
+     * Behaviour of a connection whose peer does not keep up with the sent packets.
+     */
+    public enum OutboundPolicy {
+        /**
+         * Senders outside the event loop wait until the channel is writable again, at most for the
+         * {@link #blockTimeoutMillis() block timeout}, after which their packet fails. Packets which are sent
+         * from the event loop are queued, and fail once the queue is full.
+         */
+        BLOCK,
+        /**
+         * Packets are queued, a full queue drops its oldest packet.
+         */
+        DROP_OLDEST,
+        /**
+         * Packets are queued, packets which do not fit into the full queue are dropped.
+         */
+        DROP_NEWEST,
+        /**
+         * Packets are queued, the connection is closed once the queue is full.
+         */
+        DISCONNECT
+    }
+}
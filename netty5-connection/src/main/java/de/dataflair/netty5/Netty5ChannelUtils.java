@@ -36,11 +36,17 @@ import lombok.experimental.UtilityClass;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 @UtilityClass
 public class Netty5ChannelUtils {
     public final Gson JSON = new GsonBuilder().disableHtmlEscaping().create();
     public final UUID SYSTEM_UUID = UUID.fromString("0f0f0f0f-0f0f-0f0f-f0f0-0f0f0f0f0f0f");
+    /**
+     * Runs every task on a new virtual thread, see {@link Netty5ChannelOptions#callbackExecutor()}.
+     */
+    public final Executor VIRTUAL_THREADS = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("netty5-callback-", 0).factory());
 
     public static @NotNull MultithreadEventLoopGroup createEventLoopGroup(int threads) {
         return new MultithreadEventLoopGroup(threads, Epoll.isAvailable() ? EpollHandler.newFactory() : NioHandler.newFactory());
@@ -18,28 +18,151 @@ package de.dataflair.netty5;
 
 import de.dataflair.netty5.client.Netty5ClientPacketTransmitter;
 import de.dataflair.netty5.common.codec.CodecBuffer;
+import de.dataflair.netty5.common.codec.OutboundQueueHandler;
 import de.dataflair.netty5.common.packet.Packet;
+import de.dataflair.netty5.common.packet.PacketBundle;
+import de.dataflair.netty5.common.packet.file.FileSegmentPacket;
+import de.dataflair.netty5.common.packet.file.FileTransfer;
 import io.netty5.channel.Channel;
+import io.netty5.util.concurrent.Future;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Getter
 @AllArgsConstructor
 public final class Netty5ClientChannel {
+    private static final long WRITABILITY_POLL_MILLIS = 100;
+
     @Setter
     private Identity identity;
     private final Channel channel;
     @Setter
     private Netty5ClientPacketTransmitter transmitter;
 
-    public void sendPacket(@NotNull Packet packet) {
-        channel.writeAndFlush(packet);
+    /**
+     * Sends the given packet.
+     *
+     * @param packet the packet to send
+     * @return the future which completes once the packet was written to the socket
+     */
+    public Future<Void> sendPacket(@NotNull Packet packet) {
+        if (!this.awaitWritable()) {
+            return this.blocked();
+        }
+        return channel.writeAndFlush(packet);
+    }
+
+    /**
+     * Queues a packet without flushing it, so multiple packets can be sent with a single {@link #flush()}.
+     *
+     * @param packet the packet to queue
+     * @return the future which completes once the packet was written to the socket
+     */
+    public Future<Void> write(@NotNull Packet packet) {
+        if (!this.awaitWritable()) {
+            return this.blocked();
+        }
+        return channel.write(packet);
+    }
+
+    /**
+     * Sends the given packets within a single frame. The receiver dispatches them in the given order.
+     *
+     * @param packets the packets to send
+     * @return the future which completes once the bundle was written to the socket
+     */
+    public Future<Void> sendBundle(@NotNull List<Packet> packets) {
+        if (packets.isEmpty()) {
+            return channel.newSucceededFuture();
+        }
+        if (!this.awaitWritable()) {
+            return this.blocked();
+        }
+        return channel.writeAndFlush(packets.size() == 1 ? packets.getFirst() : new PacketBundle(packets));
+    }
+
+    /**
+     * Sends a file in segments, which are transferred straight from the file without reading it into memory.
+     * The peer receives them as {@link FileSegmentPacket}s, e.g. with a {@link de.dataflair.netty5.common.packet.file.FileReceiver}.
+     *
+     * @param file   the file to send
+     * @param name   the name under which the peer stores the file
+     * @param offset the position to start at, to resume an interrupted transfer
+     * @return the future which completes once the last segment was written
+     */
+    public Future<Void> sendFile(@NotNull Path file, @NotNull String name, long offset) {
+        if (!this.awaitWritable()) {
+            return this.blocked();
+        }
+        return channel.writeAndFlush(new FileTransfer(UUID.randomUUID(), file, name, offset));
+    }
+
+    /**
+     * Flushes all packets which were queued with {@link #write(Packet)}.
+     */
+    public void flush() {
+        channel.flush();
+    }
+
+    /**
+     * Waits until the channel is writable, if the connection uses {@link Netty5ChannelOptions.OutboundPolicy#BLOCK}.
+     * The event loop itself never waits, its packets are queued instead.
+     *
+     * @return false if the channel is still not writable after the block timeout, or the wait was interrupted or failed
+     */
+    private boolean awaitWritable() {
+        if (channel.isWritable() || channel.executor().inEventLoop() ||
+                OutboundQueueHandler.policy(channel) != Netty5ChannelOptions.OutboundPolicy.BLOCK) {
+            return true;
+        }
+        var timeoutMillis = OutboundQueueHandler.blockTimeoutMillis(channel);
+        var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            while (!channel.isWritable() && channel.isActive()) {
+                var waitMillis = WRITABILITY_POLL_MILLIS;
+                if (timeoutMillis > 0) {
+                    var remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remainingMillis <= 0) {
+                        return false;
+                    }
+                    waitMillis = Math.min(waitMillis, remainingMillis);
+                }
+                if (transmitter == null) {
+                    Thread.sleep(waitMillis);
+                    continue;
+                }
+                try {
+                    transmitter.awaitWritable().get(waitMillis, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException ignored) {
+                    // check again, the channel may have been closed meanwhile
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException ignored) {
+            // a failed waiter says nothing about the writability, the packet is dropped like after the timeout
+            return false;
+        }
+        return true;
+    }
+
+    private Future<Void> blocked() {
+        var message = "Channel to " + channel.remoteAddress() + " was not writable for "
+                + OutboundQueueHandler.blockTimeoutMillis(channel) + " ms, dropped the packet";
+        System.err.println(message);
+        return channel.newFailedFuture(new IllegalStateException(message));
     }
 
     @Getter
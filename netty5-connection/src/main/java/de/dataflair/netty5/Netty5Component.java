@@ -29,8 +29,12 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Getter
 public abstract class Netty5Component {
@@ -46,6 +50,11 @@ public abstract class Netty5Component {
     private final List<Action<?>> actions = new ArrayList<>();
     @Setter
     private ConnectionState connectionState = ConnectionState.UNDEFINED;
+    /**
+     * Pipeline settings of the channels, applied to connections which are established after the change.
+     */
+    @Setter
+    private @NotNull Netty5ChannelOptions channelOptions = Netty5ChannelOptions.DEFAULT;
 
     public Netty5Component(int bossGroupThreads, @NotNull String hostname, int port) {
         this.bossGroup = Netty5ChannelUtils.createEventLoopGroup(bossGroupThreads);
@@ -94,14 +103,45 @@ public abstract class Netty5Component {
             });
         }
 
+        /**
+         * Waits for the completion, returning the default value if it fails or takes too long. Failures are
+         * already reported by the future itself. An interrupted wait restores the interrupt flag.
+         *
+         * @param defaultValue  the value to return without a result
+         * @param secondTimeout the maximum time to wait in seconds
+         * @return the result or the default value
+         */
         public E sync(E defaultValue, long secondTimeout) {
             try {
-                return get(secondTimeout, TimeUnit.SECONDS);
-            } catch (Exception e) {
+                return this.await(secondTimeout, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return defaultValue;
+            } catch (TimeoutException | CompletionException | CancellationException e) {
                 return defaultValue;
             }
         }
 
+        /**
+         * Parks the calling thread until the future completes. No monitor is held while waiting, so virtual
+         * threads unmount from their carrier.
+         *
+         * @param timeout the maximum time to wait
+         * @param unit    the unit of the timeout
+         * @return the result
+         * @throws InterruptedException  if the waiting thread was interrupted
+         * @throws TimeoutException      if the future did not complete in time
+         * @throws CompletionException   if the future failed, with the failure as cause
+         * @throws CancellationException if the future was cancelled
+         */
+        public E await(long timeout, @NotNull TimeUnit unit) throws InterruptedException, TimeoutException {
+            try {
+                return get(timeout, unit);
+            } catch (ExecutionException e) {
+                throw new CompletionException(e.getCause());
+            }
+        }
+
         public E sync(E defaultValue) {
             return sync(defaultValue, 5);
         }
@@ -22,6 +22,7 @@ import de.dataflair.netty5.Netty5ChannelInitializer;
 import de.dataflair.netty5.Netty5ChannelUtils;
 import de.dataflair.netty5.Netty5ClientChannel;
 import de.dataflair.netty5.Netty5Component;
+import de.dataflair.netty5.common.codec.FrameCompression;
 import io.netty5.bootstrap.Bootstrap;
 import io.netty5.channel.ChannelOption;
 import io.netty5.channel.SimpleChannelInboundHandler;
@@ -44,6 +45,11 @@ public final class Netty5Client extends Netty5Component {
     private final ScheduledExecutorService reconnectScheduler = Executors.newScheduledThreadPool(1);
     @Setter
     private Netty5ClientChannel thisChannel;
+    /**
+     * Compression which is requested from the server during the handshake.
+     */
+    @Setter
+    private @NotNull FrameCompression compression = FrameCompression.NONE;
     private Bootstrap bootstrap;
 
     public Netty5Client(@NotNull String hostname,
@@ -60,7 +66,7 @@ public final class Netty5Client extends Netty5Component {
          bootstrap = new Bootstrap()
                 .group(bossGroup())
                 .channelFactory(Netty5ChannelUtils::createChannelFactory)
-                .handler(new Netty5ChannelInitializer(this.identity) {
+                .handler(new Netty5ChannelInitializer(this.identity, channelOptions()) {
                     @Override
                     public SimpleChannelInboundHandler<?> handler() {
                         return new Netty5ClientHandler(Netty5Client.this);
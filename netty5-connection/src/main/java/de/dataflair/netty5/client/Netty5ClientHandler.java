@@ -20,13 +20,18 @@ package de.dataflair.netty5.client;
 
 import de.dataflair.netty5.Netty5ClientChannel;
 import de.dataflair.netty5.Netty5Component;
+import de.dataflair.netty5.common.codec.FrameCompressionHandler;
 import de.dataflair.netty5.common.packet.Packet;
+import de.dataflair.netty5.common.packet.PacketBundle;
+import de.dataflair.netty5.common.packet.PacketRegistry;
 import de.dataflair.netty5.common.packet.auth.AuthPacket;
+import de.dataflair.netty5.common.packet.auth.SharedDictionariesPacket;
 import io.netty5.channel.ChannelHandlerContext;
 import io.netty5.channel.SimpleChannelInboundHandler;
 import lombok.AllArgsConstructor;
 
 import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
 
 @AllArgsConstructor
 public final class Netty5ClientHandler extends SimpleChannelInboundHandler<Packet> {
@@ -34,23 +39,74 @@ public final class Netty5ClientHandler extends SimpleChannelInboundHandler<Packe
 
     @Override
     protected void messageReceived(ChannelHandlerContext channelHandlerContext, Packet packet) throws Exception {
+        if (packet instanceof SharedDictionariesPacket dictionariesPacket) {
+            FrameCompressionHandler.enableDictionaries(channelHandlerContext.channel(), dictionariesPacket.dictionaries());
+            return;
+        }
         client.thisChannel().transmitter().call(packet, null);
     }
 
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
-        ctx.channel().writeAndFlush(new AuthPacket(client.identity(), client.authProperty()));
+        var authPacket = new AuthPacket(client.identity(), client.authProperty(), client.compression());
+        // the auth packet may be held back by the bundler or the flush consolidation, so the id table and the
+        // compression are applied once it was written, and nothing else is sent before
+        ctx.channel().writeAndFlush(authPacket).addListener(future -> {
+            if (!future.isSuccess()) {
+                System.err.println("[client: " + client.identity().name() + "] Sending the auth packet failed");
+                future.cause().printStackTrace();
+                ctx.channel().close();
+                return;
+            }
+            this.authenticated(ctx, authPacket);
+        });
+    }
+
+    private void authenticated(ChannelHandlerContext ctx, AuthPacket authPacket) {
+        // every frame after the auth packet uses the announced id table and compression
+        PacketRegistry.bind(ctx.channel(), PacketRegistry.Mapping.of(authPacket.packetTypes()));
+        FrameCompressionHandler.enable(ctx.channel(), authPacket.compression());
+        // the dictionaries are enabled once the server named the ones it holds as well
         client.connectionState(Netty5Component.ConnectionState.CONNECTED);
-        client.thisChannel(new Netty5ClientChannel(client.identity(), ctx.channel(),
-                new Netty5ClientPacketTransmitter(
-                        client.bossGroup(),
-                        packet -> client.thisChannel().sendPacket(packet)
-                )));
+        var transmitter = new Netty5ClientPacketTransmitter(
+                ctx.channel().executor(),
+                packet -> client.thisChannel().sendPacket(packet),
+                packets -> client.thisChannel().sendBundle(packets)
+        );
+        transmitter.queryTimeoutMillis(client.channelOptions().queryTimeoutMillis());
+        transmitter.callbackExecutor(client.channelOptions().callbackExecutor());
+        transmitter.queryLimiter(client.channelOptions().newQueryLimiter());
+        client.thisChannel(new Netty5ClientChannel(client.identity(), ctx.channel(), transmitter));
         client.connectionFuture().complete(null);
     }
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (client.thisChannel() != null && client.thisChannel().channel() == ctx.channel()) {
+            client.thisChannel().transmitter().writabilityChanged(ctx.channel().isWritable());
+        }
+    }
+
+    @Override
+    public void channelInboundEvent(ChannelHandlerContext ctx, Object event) throws Exception {
+        if (!(event instanceof PacketBundle.Event bundleEvent)) {
+            ctx.fireChannelInboundEvent(event);
+            return;
+        }
+        if (client.thisChannel() != null && client.thisChannel().channel() == ctx.channel()) {
+            if (bundleEvent == PacketBundle.Event.START) {
+                client.thisChannel().transmitter().beginBundle();
+            } else {
+                client.thisChannel().transmitter().endBundle();
+            }
+        }
+    }
+
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (client.thisChannel() != null && client.thisChannel().channel() == ctx.channel()) {
+            client.thisChannel().transmitter().failPendingQueries(new ClosedChannelException());
+        }
         if ((!ctx.channel().isActive() || !ctx.channel().isOpen() || !ctx.channel().isWritable())) {
             client.connectionState(Netty5Component.ConnectionState.DISCONNECTED);
             ctx.channel().close();
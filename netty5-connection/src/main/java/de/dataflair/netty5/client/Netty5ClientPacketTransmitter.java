@@ -25,6 +25,7 @@ import io.netty5.channel.EventLoopGroup;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
 import java.util.function.Consumer;
 
 public final class Netty5ClientPacketTransmitter extends Netty5PacketTransmitter {
@@ -33,6 +34,12 @@ public final class Netty5ClientPacketTransmitter extends Netty5PacketTransmitter
         super(eventExecutors, packetConsumer);
     }
 
+    public Netty5ClientPacketTransmitter(@NotNull EventLoopGroup eventExecutors,
+                                         @NotNull Consumer<Packet> packetConsumer,
+                                         @Nullable Consumer<List<Packet>> bundleConsumer) {
+        super(eventExecutors, packetConsumer, bundleConsumer);
+    }
+
     @Override
     public void callActions(@NotNull Packet packet, @Nullable Netty5ClientChannel sender) {
     }
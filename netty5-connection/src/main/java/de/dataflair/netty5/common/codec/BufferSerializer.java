@@ -12,6 +12,15 @@ public abstract class BufferSerializer<T> {
         this.clazz = clazz;
     }
 
+    /**
+     * Returns the type which is written and read by this serializer.
+     *
+     * @return the serialized type
+     */
+    public Class<T> type() {
+        return this.clazz;
+    }
+
     public abstract void writeInBuffer(@NotNull final T object, @NotNull final CodecBuffer codecBuffer);
 
     public abstract T readFromBuffer(@NotNull final CodecBuffer codecBuffer);
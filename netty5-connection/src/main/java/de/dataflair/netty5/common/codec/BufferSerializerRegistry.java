@@ -0,0 +1,90 @@
+package de.dataflair.netty5.common.codec;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of {@link BufferSerializer}s keyed by the type they serialize.
+ * <p>
+ * Lookups are lock-free: the serializer of every requested class is resolved once, including the search
+ * through its supertypes, and cached in a {@link ClassValue}. Registering a serializer replaces that cache,
+ * so previously resolved classes pick up the new serializer on their next lookup.
+ */
+final class BufferSerializerRegistry {
+    private static final Map<Class<?>, BufferSerializer<?>> serializers = new ConcurrentHashMap<>();
+    private static volatile ClassValue<Optional<BufferSerializer<?>>> resolved = newCache();
+
+    private BufferSerializerRegistry() {
+    }
+
+    /**
+     * Registers the serializer for its type, unless a serializer for that type is already registered.
+     *
+     * @param serializer the serializer to register
+     */
+    static void register(@NotNull BufferSerializer<?> serializer) {
+        if (serializers.putIfAbsent(serializer.type(), serializer) == null) {
+            resolved = newCache();
+        }
+    }
+
+    /**
+     * Returns the serializer of the given class. If no serializer is registered for the class itself, the
+     * nearest superclass with a serializer is used, then the nearest interface.
+     *
+     * @param type the class to serialize
+     * @param <T>  the type of the class
+     * @return the serializer, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    static <T> @Nullable BufferSerializer<T> find(@NotNull Class<T> type) {
+        return (BufferSerializer<T>) resolved.get(type).orElse(null);
+    }
+
+    private static ClassValue<Optional<BufferSerializer<?>>> newCache() {
+        return new ClassValue<>() {
+            @Override
+            protected Optional<BufferSerializer<?>> computeValue(Class<?> type) {
+                return Optional.ofNullable(resolve(type));
+            }
+        };
+    }
+
+    private static @Nullable BufferSerializer<?> resolve(Class<?> type) {
+        for (var current = type; current != null; current = current.getSuperclass()) {
+            var serializer = serializers.get(current);
+            if (serializer != null) {
+                return serializer;
+            }
+        }
+
+        // breadth first, so directly implemented interfaces win over inherited ones
+        var queue = new ArrayDeque<Class<?>>();
+        var visited = new HashSet<Class<?>>();
+        for (var current = type; current != null; current = current.getSuperclass()) {
+            for (var anInterface : current.getInterfaces()) {
+                queue.add(anInterface);
+            }
+        }
+        while (!queue.isEmpty()) {
+            var current = queue.poll();
+            if (!visited.add(current)) {
+                continue;
+            }
+            var serializer = serializers.get(current);
+            if (serializer != null) {
+                return serializer;
+            }
+            for (var anInterface : current.getInterfaces()) {
+                queue.add(anInterface);
+            }
+        }
+        return null;
+    }
+}
@@ -1,15 +1,22 @@
 package de.dataflair.netty5.common.codec;
 
 import com.google.gson.JsonArray;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonObject;
 import de.dataflair.netty5.Netty5ChannelUtils;
+import de.dataflair.netty5.common.collection.IntArrayList;
+import de.dataflair.netty5.common.collection.LongObjectHashMap;
 import io.netty5.buffer.Buffer;
 import io.netty5.buffer.BufferAllocator;
 import io.netty5.buffer.DefaultBufferAllocators;
+import io.netty5.util.SafeCloseable;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.lang.reflect.Type;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.function.BiConsumer;
@@ -18,57 +25,38 @@ import java.util.function.Supplier;
 
 /**
  * Represents a protocol buffer that can be used to read and write various data types.
+ * <p>
+ * The {@link Protocol} of the buffer decides how lengths of strings, lists, maps and nested buffers as well
+ * as enum ordinals are encoded. It is transmitted within the header of every frame.
  */
-public record CodecBuffer(@NotNull Buffer origin) {
+public record CodecBuffer(@NotNull Buffer origin, @NotNull Protocol protocol) implements SafeCloseable {
     /**
-     * The BUFFER_ALLOCATOR is a private static final variable that holds the instance
-     * of the BufferAllocator interface. It is initialized with the DefaultBufferAllocators.offHeapAllocator()
-     * implementation.
+     * The protocol of all buffers which are created without an explicit protocol.
+     */
+    private static volatile Protocol defaultProtocol = Protocol.COMPACT;
+
+    /**
+     * The bufferAllocator holds the instance of the BufferAllocator interface which is used for every
+     * buffer allocated by {@link #allocate()}. It is initialized with the DefaultBufferAllocators.offHeapAllocator()
+     * implementation and can be replaced by {@link #bufferAllocator(BufferAllocator)}, e.g. with a pooled allocator.
      * <p>
      * The BufferAllocator interface is responsible for providing memory management functionalities
      * for buffer allocation. It abstracts the underlying memory allocation mechanism and provides
      * a unified API to allocate buffers, such as byte arrays, off-heap memory blocks, etc.
      * <p>
-     * This constant variable ensures that a single instance of BufferAllocator is used throughout
-     * the class. It is recommended to use a constant instance of the allocator to prevent
-     * unnecessary memory allocation overhead.
-     * <p>
-     * The BUFFER_ALLOCATOR variable is declared private to restrict its visibility within the class.
-     * Being declared as static, it belongs to the class itself rather than an instance of the class.
-     * Finally, the final modifier ensures that the value of the variable cannot be modified once
-     * it is assigned.
-     * <p>
-     * Example usage:
-     *   // Allocate a buffer of size 1024 bytes
-     *   ByteBuffer buffer = BUFFER_ALLOCATOR.allocate(1024);
-     * <p>
-     *   // Deallocate the buffer when it is no longer needed
-     *   BUFFER_ALLOCATOR.deallocate(buffer);
-     * <p>
-     *   // Retrieve the maximum buffer size that can be allocated
-     *   int maxBufferSize = BUFFER_ALLOCATOR.getMaxBufferSize();
+     * Buffers allocated by this allocator have to be closed once they are no longer needed, see
+     * {@link #close()}. Otherwise, their memory only returns to the allocator when they are garbage collected.
      */
-    private static final BufferAllocator BUFFER_ALLOCATOR = DefaultBufferAllocators.offHeapAllocator();
+    private static volatile BufferAllocator bufferAllocator = DefaultBufferAllocators.offHeapAllocator();
 
     /**
-     * A list of BufferSerializer objects used for serialization and deserialization.
-     * The list is thread-safe to allow concurrent access.
-     */
-    private static final List<BufferSerializer<?>> bufferSerializers = Collections.synchronizedList(new ArrayList<>());
-
-    /**
-     * Adds a single BufferSerializer to the list if no serializer of the same type is already present.
+     * Registers a BufferSerializer for its type if no serializer for that type is already present.
+     * Lookups of the type and of its subtypes see the serializer afterwards.
      *
      * @param serializer The BufferSerializer to be added
      */
     public static void addBufferSerializer(@NotNull final BufferSerializer<?> serializer) {
-        bufferSerializers.stream()
-                .filter(existing -> existing.getClass().equals(serializer.getClass()))
-                .findFirst()
-                .ifPresentOrElse(
-                        existing -> {}, // Do nothing if a serializer of the same type already exists
-                        () -> bufferSerializers.add(serializer) // Otherwise, add the new serializer
-                );
+        BufferSerializerRegistry.register(serializer);
     }
 
     /**
@@ -80,13 +68,70 @@ public record CodecBuffer(@NotNull Buffer origin) {
         Arrays.stream(serializers).forEach(CodecBuffer::addBufferSerializer);
     }
 
+    /**
+     * Creates a CodecBuffer with the {@link #defaultProtocol()}.
+     *
+     * @param origin the buffer to read from and write to
+     */
+    public CodecBuffer(@NotNull Buffer origin) {
+        this(origin, defaultProtocol);
+    }
+
+    /**
+     * Returns the protocol which is used by buffers created without an explicit protocol.
+     *
+     * @return the default protocol
+     */
+    public static Protocol defaultProtocol() {
+        return defaultProtocol;
+    }
+
+    /**
+     * Replaces the protocol which is used by buffers created without an explicit protocol. Peers can read
+     * both protocols, so this only affects the size of the written packets.
+     *
+     * @param protocol the protocol to use
+     */
+    public static void defaultProtocol(@NotNull Protocol protocol) {
+        defaultProtocol = protocol;
+    }
+
+    /**
+     * Replaces the allocator which is used for all following allocations. Buffers which are already
+     * allocated are not affected.
+     *
+     * @param allocator the allocator to use
+     */
+    public static void bufferAllocator(@NotNull BufferAllocator allocator) {
+        bufferAllocator = allocator;
+    }
+
+    /**
+     * Switches to the pooled off-heap allocator. Pooling avoids a new off-heap allocation for every packet,
+     * but requires that all buffers are closed, because unclosed buffers are not returned to the pool.
+     */
+    public static void usePooledAllocator() {
+        bufferAllocator(BufferAllocator.offHeapPooled());
+    }
+
     /**
      * Allocates a new ProtocolBuffer object.
      *
      * @return a newly allocated ProtocolBuffer object
      */
     public static CodecBuffer allocate() {
-        return new CodecBuffer(BUFFER_ALLOCATOR.allocate(0));
+        return allocate(0);
+    }
+
+    /**
+     * Allocates a new ProtocolBuffer object with room for the expected amount of bytes. The buffer still grows
+     * if more bytes are written, but every growth copies the written content.
+     *
+     * @param expected the expected amount of bytes
+     * @return a newly allocated ProtocolBuffer object
+     */
+    public static CodecBuffer allocate(int expected) {
+        return new CodecBuffer(bufferAllocator.allocate(expected));
     }
 
     /**
@@ -103,6 +148,17 @@ public record CodecBuffer(@NotNull Buffer origin) {
         }
     }
 
+    /**
+     * Closes the origin buffer and gives its memory back to the allocator. Closing an already closed
+     * buffer has no effect.
+     */
+    @Override
+    public void close() {
+        if (this.origin.isAccessible()) {
+            this.origin.close();
+        }
+    }
+
     /**
      * Writes the given string value to the ProtocolBuffer.
      *
@@ -110,19 +166,117 @@ public record CodecBuffer(@NotNull Buffer origin) {
      * @return the ProtocolBuffer instance
      */
     public CodecBuffer writeString(@NotNull String value) {
-        var bytes = value.getBytes(StandardCharsets.UTF_8);
-        this.origin.writeInt(bytes.length);
-        this.origin.writeBytes(bytes);
+        var length = value.length();
+        var encodedLength = utf8Length(value);
+        this.writeLength(encodedLength);
+        this.origin.ensureWritable(encodedLength);
+
+        var offset = this.origin.writerOffset();
+        var i = 0;
+        // ascii fast path, every char is a single byte
+        for (; i < length; i++) {
+            var c = value.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            this.origin.setByte(offset++, (byte) c);
+        }
+
+        for (; i < length; i++) {
+            var c = value.charAt(i);
+            if (c < 0x80) {
+                this.origin.setByte(offset++, (byte) c);
+            } else if (c < 0x800) {
+                this.origin.setByte(offset++, (byte) (0xC0 | (c >> 6)));
+                this.origin.setByte(offset++, (byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    var codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    this.origin.setByte(offset++, (byte) (0xF0 | (codePoint >> 18)));
+                    this.origin.setByte(offset++, (byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                    this.origin.setByte(offset++, (byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                    this.origin.setByte(offset++, (byte) (0x80 | (codePoint & 0x3F)));
+                } else {
+                    // unpaired surrogate, replaced like String#getBytes does
+                    this.origin.setByte(offset++, (byte) '?');
+                }
+            } else {
+                this.origin.setByte(offset++, (byte) (0xE0 | (c >> 12)));
+                this.origin.setByte(offset++, (byte) (0x80 | ((c >> 6) & 0x3F)));
+                this.origin.setByte(offset++, (byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        this.origin.writerOffset(offset);
         return this;
     }
 
     /**
-     * Reads a String from the ProtocolBuffer.
+     * Calculates the amount of bytes the UTF-8 encoding of the given characters needs. Unpaired surrogates
+     * count as a single replacement byte.
+     *
+     * @param value the characters to measure
+     * @return the encoded size in bytes
+     */
+    public static int utf8Length(@NotNull CharSequence value) {
+        var length = value.length();
+        var encodedLength = length;
+        for (var i = 0; i < length; i++) {
+            var c = value.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                encodedLength += 1;
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    // four bytes for two chars
+                    encodedLength += 2;
+                    i++;
+                }
+            } else {
+                encodedLength += 2;
+            }
+        }
+        return encodedLength;
+    }
+
+    /**
+     * Reads a String from the ProtocolBuffer. The length is checked against the readable bytes before anything is
+     * allocated. The bytes are decoded in a single pass, from the backing array if the string lies within one heap
+     * component, and with a {@link Utf8BufferReader} otherwise.
      *
      * @return The String read from the ProtocolBuffer.
      */
     public String readString() {
-        return this.origin.readCharSequence(this.origin.readInt(), StandardCharsets.UTF_8).toString();
+        var length = this.readLength();
+        if (length < 0 || length > this.origin.readableBytes()) {
+            throw new IndexOutOfBoundsException("Invalid string length " + length + ", readable bytes: " + this.origin.readableBytes());
+        }
+        if (length == 0) {
+            return "";
+        }
+
+        String value = null;
+        try (var components = this.origin.forEachComponent()) {
+            var component = components.firstReadable();
+            if (component.readableBytes() >= length && component.hasReadableArray()) {
+                value = new String(component.readableArray(), component.readableArrayOffset(), length, StandardCharsets.UTF_8);
+            }
+        }
+        if (value != null) {
+            this.origin.skipReadableBytes(length);
+            return value;
+        }
+
+        // every char takes at least one byte
+        var chars = new char[length];
+        var reader = new Utf8BufferReader(this.origin, length);
+        var count = 0;
+        int read;
+        while (count < length && (read = reader.read(chars, count, length - count)) > 0) {
+            count += read;
+        }
+        return new String(chars, 0, count);
     }
 
     /**
@@ -186,6 +340,183 @@ public record CodecBuffer(@NotNull Buffer origin) {
         return this.origin.readInt();
     }
 
+    /**
+     * Writes an integer value as variable-length quantity. Every byte carries seven bits of the value,
+     * least significant group first, and the highest bit marks that another byte follows.
+     *
+     * @param value the integer value to write
+     * @return the CodecBuffer instance
+     */
+    public CodecBuffer writeVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            this.origin.writeByte((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        this.origin.writeByte((byte) value);
+        return this;
+    }
+
+    /**
+     * Reads an integer value which was written by {@link #writeVarInt(int)}.
+     *
+     * @return the integer value read from the buffer
+     * @throws IllegalStateException if the encoded value is longer than five bytes
+     */
+    public int readVarInt() {
+        var value = 0;
+        for (var shift = 0; shift < 35; shift += 7) {
+            var current = this.origin.readByte();
+            value |= (current & 0x7F) << shift;
+            if (current >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("VarInt is longer than 5 bytes");
+    }
+
+    /**
+     * Calculates the amount of bytes {@link #writeVarInt(int)} needs for the given value.
+     *
+     * @param value the integer value
+     * @return the encoded size in bytes (between 1 and 5)
+     */
+    public static int varIntSize(int value) {
+        return (31 - Integer.numberOfLeadingZeros(value | 1)) / 7 + 1;
+    }
+
+    /**
+     * Writes a long value as variable-length quantity, see {@link #writeVarInt(int)}.
+     *
+     * @param value the long value to write
+     * @return the CodecBuffer instance
+     */
+    public CodecBuffer writeVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            this.origin.writeByte((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        this.origin.writeByte((byte) value);
+        return this;
+    }
+
+    /**
+     * Reads a long value which was written by {@link #writeVarLong(long)}.
+     *
+     * @return the long value read from the buffer
+     * @throws IllegalStateException if the encoded value is longer than ten bytes
+     */
+    public long readVarLong() {
+        var value = 0L;
+        for (var shift = 0; shift < 70; shift += 7) {
+            var current = this.origin.readByte();
+            value |= (long) (current & 0x7F) << shift;
+            if (current >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("VarLong is longer than 10 bytes");
+    }
+
+    /**
+     * Calculates the amount of bytes {@link #writeVarLong(long)} needs for the given value.
+     *
+     * @param value the long value
+     * @return the encoded size in bytes (between 1 and 10)
+     */
+    public static int varLongSize(long value) {
+        return (63 - Long.numberOfLeadingZeros(value | 1)) / 7 + 1;
+    }
+
+    /**
+     * Writes a signed integer value as ZigZag encoded variable-length quantity, so values close to zero
+     * need few bytes regardless of their sign.
+     *
+     * @param value the integer value to write
+     * @return the CodecBuffer instance
+     */
+    public CodecBuffer writeZigZagVarInt(int value) {
+        return this.writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Reads a signed integer value which was written by {@link #writeZigZagVarInt(int)}.
+     *
+     * @return the integer value read from the buffer
+     */
+    public int readZigZagVarInt() {
+        var value = this.readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes a signed long value as ZigZag encoded variable-length quantity, see {@link #writeZigZagVarInt(int)}.
+     *
+     * @param value the long value to write
+     * @return the CodecBuffer instance
+     */
+    public CodecBuffer writeZigZagVarLong(long value) {
+        return this.writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Reads a signed long value which was written by {@link #writeZigZagVarLong(long)}.
+     *
+     * @return the long value read from the buffer
+     */
+    public long readZigZagVarLong() {
+        var value = this.readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes a length or ordinal in the encoding of the {@link #protocol()}.
+     *
+     * @param length the non-negative value to write
+     * @return the CodecBuffer instance
+     */
+    public CodecBuffer writeLength(int length) {
+        return this.protocol == Protocol.COMPACT ? this.writeVarInt(length) : this.writeInt(length);
+    }
+
+    /**
+     * Reads a length or ordinal which was written by {@link #writeLength(int)}.
+     *
+     * @return the value read from the buffer
+     */
+    public int readLength() {
+        return this.protocol == Protocol.COMPACT ? this.readVarInt() : this.readInt();
+    }
+
+    /**
+     * Reads the length of an array whose elements take the given amount of bytes each, and checks that the elements
+     * fit into the readable bytes before the array is allocated.
+     *
+     * @param elementBytes the encoded size of a single element
+     * @return the amount of elements
+     * @throws IndexOutOfBoundsException if the length is negative or exceeds the readable bytes
+     */
+    public int readArrayLength(int elementBytes) {
+        var length = this.readLength();
+        this.checkReadable(length, (long) length * elementBytes);
+        return length;
+    }
+
+    private void checkReadable(int length, long bytes) {
+        if (length < 0 || bytes > this.origin.readableBytes()) {
+            throw new IndexOutOfBoundsException("Invalid array length " + length + ", readable bytes: " + this.origin.readableBytes());
+        }
+    }
+
+    /**
+     * Calculates the amount of bytes {@link #writeLength(int)} needs for the given value.
+     *
+     * @param length the non-negative value
+     * @return the encoded size in bytes
+     */
+    public int lengthSize(int length) {
+        return this.protocol.lengthSize(length);
+    }
+
     /**
      * Writes the ordinal value of the given Enum to the ProtocolBuffer.
      *
@@ -193,7 +524,7 @@ public record CodecBuffer(@NotNull Buffer origin) {
      * @return the ProtocolBuffer object for method chaining
      */
     public CodecBuffer writeEnum(@NotNull Enum<?> value) {
-        this.origin.writeInt(value.ordinal());
+        this.writeLength(value.ordinal());
         return this;
     }
 
@@ -205,7 +536,7 @@ public record CodecBuffer(@NotNull Buffer origin) {
      * @throws NullPointerException if clazz is null.
      */
     public <T extends Enum<?>> T readEnum(@NotNull Class<T> clazz) {
-        return clazz.getEnumConstants()[this.origin.readInt()];
+        return clazz.getEnumConstants()[this.readLength()];
     }
 
     /**
@@ -279,20 +610,20 @@ public record CodecBuffer(@NotNull Buffer origin) {
      * @return the current ProtocolBuffer instance
      */
     public CodecBuffer writeBuffer(@NotNull CodecBuffer buffer) {
-        this.writeInt(buffer.origin().readableBytes());
+        this.writeLength(buffer.origin().readableBytes());
         this.writeBytes(buffer.origin());
         return this;
     }
 
     /**
-     * Reads a CodecBuffer from the current buffer.
+     * Reads a CodecBuffer from the current buffer. The returned buffer is split off the current buffer without
+     * copying, it stays valid after the current buffer is closed and has to be closed by the caller.
      *
      * @return a newly created CodecBuffer
      */
     public CodecBuffer readBuffer() {
-        var length = this.readInt(); // Length of the following buffer
-        var bufferSubsequence = this.origin.readBytes(ByteBuffer.allocateDirect(length)); // Subsequence of the origin buffer
-        return new CodecBuffer(bufferSubsequence);
+        var length = this.readArrayLength(Byte.BYTES); // Length of the following buffer
+        return new CodecBuffer(this.origin.readSplit(length), this.protocol);
     }
 
     /**
@@ -427,7 +758,7 @@ public record CodecBuffer(@NotNull Buffer origin) {
      * @return the updated ProtocolBuffer instance
      */
     public <T> CodecBuffer writeList(@NotNull List<T> list, @NotNull BiConsumer<CodecBuffer, T> consumer) {
-        this.writeInt(list.size());
+        this.writeLength(list.size());
         list.forEach(o -> consumer.accept(this, o));
         return this;
     }
@@ -441,7 +772,7 @@ public record CodecBuffer(@NotNull Buffer origin) {
      * @return the same list with the newly read elements added to it
      */
     public <T> List<T> readList(@NotNull List<T> list, @NotNull Supplier<T> supplier) {
-        var size = this.readInt();
+        var size = this.readLength();
         for (var i = 0; i < size; i++) {
             list.add(supplier.get());
         }
@@ -532,6 +863,302 @@ public record CodecBuffer(@NotNull Buffer origin) {
         return this.readList(list, this::readByte);
     }
 
+    /**
+     * Writes an int array with a length prefix. The elements are copied in bulk if possible.
+     *
+     * @param values the values to write
+     * @return the CodecBuffer instance
+     */
+    public CodecBuffer writeIntArray(int @NotNull [] values) {
+        this.writeLength(values.length);
+        return this.writeInts(values, 0, values.length);
+    }
+
+    /**
+     * Reads an int array which was written by {@link #writeIntArray(int[])}.
+     *
+     * @return the read values
+     */
+    public int[] readIntArray() {
+        var values = new int[this.readArrayLength(Integer.BYTES)];
+        this.readInts(values, 0, values.length);
+        return values;
+    }
+
+    /**
+     * Writes a range of an int array without a length prefix.
+     *
+     * @param values the values to write
+     * @param offset the index of the first value
+     * @param length the amount of values
+     * @return the CodecBuffer instance
+     */
+    public CodecBuffer writeInts(int @NotNull [] values, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, values.length);
+        var view = this.writableView(length * Integer.BYTES);
+        if (view != null) {
+            view.asIntBuffer().put(values, offset, length);
+            this.origin.skipWritableBytes(length * Integer.BYTES);
+        } else {
+            for (var i = offset; i < offset + length; i++) {
+                this.origin.writeInt(values[i]);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Reads ints into a range of the given array.
+     *
+     * @param target the array to read into
+     * @param offset the index of the first value
+     * @param length the amount of values
+     */
+    public void readInts(int @NotNull [] target, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, target.length);
+        var view = this.readableView(length * Integer.BYTES);
+        if (view != null) {
+            view.asIntBuffer().get(target, offset, length);
+            this.origin.skipReadableBytes(length * Integer.BYTES);
+        } else {
+            for (var i = offset; i < offset + length; i++) {
+                target[i] = this.origin.readInt();
+            }
+        }
+    }
+
+    /**
+     * Writes a long array with a length prefix. The elements are copied in bulk if possible.
+     *
+     * @param values the values to write
+     * @return the CodecBuffer instance
+     */
+    public CodecBuffer writeLongArray(long @NotNull [] values) {
+        this.writeLength(values.length);
+        var view = this.writableView(values.length * Long.BYTES);
+        if (view != null) {
+            view.asLongBuffer().put(values);
+            this.origin.skipWritableBytes(values.length * Long.BYTES);
+        } else {
+            for (var value : values) {
+                this.origin.writeLong(value);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Reads a long array which was written by {@link #writeLongArray(long[])}.
+     *
+     * @return the read values
+     */
+    public long[] readLongArray() {
+        var values = new long[this.readArrayLength(Long.BYTES)];
+        var view = this.readableView(values.length * Long.BYTES);
+        if (view != null) {
+            view.asLongBuffer().get(values);
+            this.origin.skipReadableBytes(values.length * Long.BYTES);
+        } else {
+            for (var i = 0; i < values.length; i++) {
+                values[i] = this.origin.readLong();
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Writes a float array with a length prefix. The elements are copied in bulk if possible.
+     *
+     * @param values the values to write
+     * @return the CodecBuffer instance
+     */
+    public CodecBuffer writeFloatArray(float @NotNull [] values) {
+        this.writeLength(values.length);
+        var view = this.writableView(values.length * Float.BYTES);
+        if (view != null) {
+            view.asFloatBuffer().put(values);
+            this.origin.skipWritableBytes(values.length * Float.BYTES);
+        } else {
+            for (var value : values) {
+                this.origin.writeFloat(value);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Reads a float array which was written by {@link #writeFloatArray(float[])}.
+     *
+     * @return the read values
+     */
+    public float[] readFloatArray() {
+        var values = new float[this.readArrayLength(Float.BYTES)];
+        var view = this.readableView(values.length * Float.BYTES);
+        if (view != null) {
+            view.asFloatBuffer().get(values);
+            this.origin.skipReadableBytes(values.length * Float.BYTES);
+        } else {
+            for (var i = 0; i < values.length; i++) {
+                values[i] = this.origin.readFloat();
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Writes a double array with a length prefix. The elements are copied in bulk if possible.
+     *
+     * @param values the values to write
+     * @return the CodecBuffer instance
+     */
+    public CodecBuffer writeDoubleArray(double @NotNull [] values) {
+        this.writeLength(values.length);
+        var view = this.writableView(values.length * Double.BYTES);
+        if (view != null) {
+            view.asDoubleBuffer().put(values);
+            this.origin.skipWritableBytes(values.length * Double.BYTES);
+        } else {
+            for (var value : values) {
+                this.origin.writeDouble(value);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Reads a double array which was written by {@link #writeDoubleArray(double[])}.
+     *
+     * @return the read values
+     */
+    public double[] readDoubleArray() {
+        var values = new double[this.readArrayLength(Double.BYTES)];
+        var view = this.readableView(values.length * Double.BYTES);
+        if (view != null) {
+            view.asDoubleBuffer().get(values);
+            this.origin.skipReadableBytes(values.length * Double.BYTES);
+        } else {
+            for (var i = 0; i < values.length; i++) {
+                values[i] = this.origin.readDouble();
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Writes a byte array with a length prefix.
+     *
+     * @param values the values to write
+     * @return the CodecBuffer instance
+     */
+    public CodecBuffer writeByteArray(byte @NotNull [] values) {
+        this.writeLength(values.length);
+        this.origin.writeBytes(values);
+        return this;
+    }
+
+    /**
+     * Reads a byte array which was written by {@link #writeByteArray(byte[])}.
+     *
+     * @return the read values
+     */
+    public byte[] readByteArray() {
+        var values = new byte[this.readArrayLength(Byte.BYTES)];
+        this.origin.readBytes(values, 0, values.length);
+        return values;
+    }
+
+    /**
+     * Writes a boolean array with a length prefix, packing eight values into each byte.
+     *
+     * @param values the values to write
+     * @return the CodecBuffer instance
+     */
+    public CodecBuffer writeBooleanArray(boolean @NotNull [] values) {
+        this.writeLength(values.length);
+        for (var i = 0; i < values.length; i += 8) {
+            var packed = 0;
+            for (var bit = 0; bit < 8 && i + bit < values.length; bit++) {
+                if (values[i + bit]) {
+                    packed |= 1 << bit;
+                }
+            }
+            this.origin.writeByte((byte) packed);
+        }
+        return this;
+    }
+
+    /**
+     * Reads a boolean array which was written by {@link #writeBooleanArray(boolean[])}.
+     *
+     * @return the read values
+     */
+    public boolean[] readBooleanArray() {
+        var length = this.readLength();
+        // eight values share a byte
+        this.checkReadable(length, ((long) length + 7) / 8);
+        var values = new boolean[length];
+        for (var i = 0; i < values.length; i += 8) {
+            var packed = this.origin.readByte();
+            for (var bit = 0; bit < 8 && i + bit < values.length; bit++) {
+                values[i + bit] = (packed & (1 << bit)) != 0;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Writes a primitive int list with a length prefix, in the same format as {@link #writeIntArray(int[])}.
+     *
+     * @param list the list to write
+     * @return the CodecBuffer instance
+     */
+    public CodecBuffer writeIntList(@NotNull IntArrayList list) {
+        return this.writeStream(list);
+    }
+
+    /**
+     * Reads ints and appends them to the given primitive list.
+     *
+     * @param list the list to read into
+     * @return the given list
+     */
+    public IntArrayList readIntList(@NotNull IntArrayList list) {
+        return this.readStream(list);
+    }
+
+    /**
+     * Writes a map with primitive long keys.
+     *
+     * @param map           the map to write
+     * @param valueConsumer writes a single value
+     * @param <V>           the type of the values
+     * @return the CodecBuffer instance
+     */
+    public <V> CodecBuffer writeLongMap(@NotNull LongObjectHashMap<V> map, @NotNull BiConsumer<CodecBuffer, V> valueConsumer) {
+        this.writeLength(map.size());
+        map.forEach((key, value) -> {
+            this.origin.writeLong(key);
+            valueConsumer.accept(this, value);
+        });
+        return this;
+    }
+
+    /**
+     * Reads a map with primitive long keys into the given map.
+     *
+     * @param map           the map to read into
+     * @param valueSupplier reads a single value
+     * @param <V>           the type of the values
+     * @return the given map
+     */
+    public <V> LongObjectHashMap<V> readLongMap(@NotNull LongObjectHashMap<V> map, @NotNull Supplier<V> valueSupplier) {
+        var size = this.readLength();
+        for (var i = 0; i < size; i++) {
+            map.put(this.origin.readLong(), valueSupplier.get());
+        }
+        return map;
+    }
+
     /**
      * Writes a {@link CharSequence} to the codec buffer.
      *
@@ -580,7 +1207,7 @@ public record CodecBuffer(@NotNull Buffer origin) {
             @NotNull BiConsumer<CodecBuffer, K> keyConsumer,
             @NotNull BiConsumer<CodecBuffer, V> valueConsumer
     ) {
-        this.writeInt(map.size());
+        this.writeLength(map.size());
         map.forEach((k, v) -> {
             keyConsumer.accept(this, k);
             valueConsumer.accept(this, v);
@@ -603,7 +1230,7 @@ public record CodecBuffer(@NotNull Buffer origin) {
             @NotNull Supplier<K> keySupplier,
             @NotNull Supplier<V> valueSupplier
     ) {
-        var size = this.readInt();
+        var size = this.readLength();
         for (int i = 0; i < size; i++) {
             map.put(keySupplier.get(), valueSupplier.get());
         }
@@ -635,14 +1262,13 @@ public record CodecBuffer(@NotNull Buffer origin) {
     }
 
     /**
-     * Writes a JsonObject to the buffer as a string.
+     * Writes a JsonObject to the buffer, see {@link #writeJson(Object, Type)}.
      *
      * @param jsonObject The JsonObject to be written
      * @return This CodecBuffer instance for method chaining
      */
     public CodecBuffer writeJsonObject(@NotNull JsonObject jsonObject) {
-        this.writeString(jsonObject.toString());
-        return this;
+        return this.writeJson(jsonObject, JsonObject.class);
     }
 
     /**
@@ -651,7 +1277,73 @@ public record CodecBuffer(@NotNull Buffer origin) {
      * @return The JsonObject read from the buffer
      */
     public JsonObject readJsonObject() {
-        return Netty5ChannelUtils.JSON.fromJson(this.readString(), JsonObject.class);
+        return this.readJson(JsonObject.class);
+    }
+
+    /**
+     * Serializes a value with {@link Netty5ChannelUtils#JSON} straight into the buffer. The JSON text is encoded
+     * as UTF-8 while it is generated and the length prefix is filled in afterwards, so neither a String nor a
+     * byte array of the document is created. The result can also be read with {@link #readString()}.
+     * <p>
+     * With the {@link Protocol#COMPACT} protocol the length always takes five bytes, as it is not known upfront.
+     *
+     * @param value the value to serialize
+     * @param type  the type of the value, which may be generic
+     * @return This CodecBuffer instance for method chaining
+     */
+    public CodecBuffer writeJson(@Nullable Object value, @NotNull Type type) {
+        var lengthOffset = this.origin.writerOffset();
+        var lengthSize = this.protocol == Protocol.COMPACT ? 5 : Integer.BYTES;
+        this.origin.ensureWritable(lengthSize);
+        this.origin.skipWritableBytes(lengthSize);
+
+        try (var writer = new Utf8BufferWriter(this.origin)) {
+            Netty5ChannelUtils.JSON.toJson(value, type, Netty5ChannelUtils.JSON.newJsonWriter(writer));
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+
+        var length = this.origin.writerOffset() - lengthOffset - lengthSize;
+        if (this.protocol == Protocol.COMPACT) {
+            // padded varint, every group but the last keeps its continuation bit
+            for (var i = 0; i < 4; i++) {
+                this.origin.setByte(lengthOffset + i, (byte) (((length >>> (7 * i)) & 0x7F) | 0x80));
+            }
+            this.origin.setByte(lengthOffset + 4, (byte) (length >>> 28));
+        } else {
+            this.origin.setInt(lengthOffset, length);
+        }
+        return this;
+    }
+
+    /**
+     * Deserializes a value with {@link Netty5ChannelUtils#JSON} straight from the buffer. Accepts everything
+     * written by {@link #writeJson(Object, Type)} or as JSON text with {@link #writeString(String)}.
+     *
+     * @param type the type to deserialize, which may be generic
+     * @param <T>  the type of the value
+     * @return the deserialized value
+     */
+    public <T> T readJson(@NotNull Type type) {
+        var reader = new Utf8BufferReader(this.origin, this.readLength());
+        try {
+            return Netty5ChannelUtils.JSON.fromJson(Netty5ChannelUtils.JSON.newJsonReader(reader), type);
+        } finally {
+            // skip trailing whitespace and everything after a failure
+            this.origin.skipReadableBytes(reader.remaining());
+        }
+    }
+
+    /**
+     * Deserializes a value with {@link Netty5ChannelUtils#JSON} straight from the buffer.
+     *
+     * @param type the class to deserialize
+     * @param <T>  the type of the value
+     * @return the deserialized value
+     * @see #readJson(Type)
+     */
+    public <T> T readJson(@NotNull Class<T> type) {
+        return this.readJson((Type) type);
     }
 
     /**
@@ -663,7 +1355,7 @@ public record CodecBuffer(@NotNull Buffer origin) {
      * @return This CodecBuffer instance for method chaining
      */
     public <T> CodecBuffer writeWithSerializer(@NotNull T object, @NotNull Class<T> clazz) {
-        BufferSerializer<T> serializer = findSerializer(clazz);
+        BufferSerializer<T> serializer = BufferSerializerRegistry.find(clazz);
         if (serializer == null) {
             System.err.println("No serializer found for class: " + clazz.getName());
             return this;
@@ -686,7 +1378,7 @@ public record CodecBuffer(@NotNull Buffer origin) {
      * @return The object read from the buffer, or null if an error occurs
      */
     public <T> T readBySerializer(@NotNull Class<T> clazz) {
-        BufferSerializer<T> serializer = findSerializer(clazz);
+        BufferSerializer<T> serializer = BufferSerializerRegistry.find(clazz);
         if (serializer == null) {
             System.err.println("No serializer found for class: " + clazz.getName());
             return null;
@@ -702,18 +1394,56 @@ public record CodecBuffer(@NotNull Buffer origin) {
     }
 
     /**
-     * Finds a serializer for the given class.
-     *
-     * @param <T> The type of the class to find a serializer for
-     * @param clazz The class to find a serializer for
-     * @return A BufferSerializer for the given class, or null if none is found
+     * Returns a big-endian view of the next writable bytes, if they lie within a single component.
+     * The writer offset is not moved.
+     */
+    private @Nullable ByteBuffer writableView(int bytes) {
+        this.origin.ensureWritable(bytes);
+        if (bytes == 0 || this.origin.countWritableComponents() != 1) {
+            return null;
+        }
+        try (var iterator = this.origin.forEachComponent()) {
+            var component = iterator.firstWritable();
+            return component == null ? null : component.writableBuffer().order(ByteOrder.BIG_ENDIAN);
+        }
+    }
+
+    /**
+     * Returns a big-endian view of the next readable bytes, if they lie within a single component.
+     * The reader offset is not moved.
+     */
+    private @Nullable ByteBuffer readableView(int bytes) {
+        if (bytes == 0 || bytes > this.origin.readableBytes() || this.origin.countReadableComponents() != 1) {
+            return null;
+        }
+        try (var iterator = this.origin.forEachComponent()) {
+            var component = iterator.firstReadable();
+            return component == null ? null : component.readableBuffer().order(ByteOrder.BIG_ENDIAN);
+        }
+    }
+
+    /**
+     * Encoding of lengths and enum ordinals within a buffer.
      */
-    @SuppressWarnings("unchecked")
-    private <T> BufferSerializer<T> findSerializer(Class<T> clazz) {
-        return (BufferSerializer<T>) bufferSerializers.stream()
-                .filter(serializer -> clazz.isAssignableFrom(serializer.getClass()))
-                .findFirst()
-                .orElse(null);
+    public enum Protocol {
+        /**
+         * Every length and ordinal is written as fixed four byte integer.
+         */
+        LEGACY,
+        /**
+         * Every length and ordinal is written as variable-length quantity, see {@link #writeVarInt(int)}.
+         */
+        COMPACT;
+
+        /**
+         * Calculates the amount of bytes a length or ordinal needs within this protocol.
+         *
+         * @param length the non-negative value
+         * @return the encoded size in bytes
+         */
+        public int lengthSize(int length) {
+            return this == COMPACT ? varIntSize(length) : Integer.BYTES;
+        }
     }
 
     /**
@@ -733,5 +1463,16 @@ public record CodecBuffer(@NotNull Buffer origin) {
          * @param codecBuffer The CodecBuffer to read from
          */
         void readBuffer(@NotNull CodecBuffer codecBuffer);
+
+        /**
+         * Returns the exact amount of bytes {@link #writeBuffer(CodecBuffer)} writes with the given protocol,
+         * or {@code -1} if the size is not known in advance.
+         *
+         * @param protocol the protocol of the target buffer
+         * @return the encoded size in bytes, or -1
+         */
+        default int encodedSize(@NotNull Protocol protocol) {
+            return -1;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+package de.dataflair.netty5.common.codec;
+
+import de.dataflair.netty5.common.packet.Packet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pre-trained deflate dictionary for the frames of a packet type, see {@link CompressionDictionaryTrainer}.
+ * <p>
+ * Small frames hardly compress on their own, but mostly repeat the content of the dictionary. Both peers have to
+ * register the same dictionaries; the id in the frame header selects the dictionary, so it acts as version.
+ * A retrained dictionary gets a new id and replaces the previous one for sending, while frames compressed
+ * with the previous id can still be decompressed as long as it stays registered.
+ *
+ * @param id      the unique, positive id of the dictionary
+ * @param content the dictionary, at most {@link #MAX_SIZE} bytes, most common content last
+ */
+public record CompressionDictionary(int id, byte @NotNull [] content) {
+    /**
+     * Deflate only refers back this far, so larger dictionaries are useless.
+     */
+    public static final int MAX_SIZE = 32 * 1024;
+
+    private static final Map<Integer, CompressionDictionary> byId = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, CompressionDictionary> byType = new ConcurrentHashMap<>();
+
+    public CompressionDictionary {
+        if (id <= 0) {
+            throw new IllegalArgumentException("Dictionary ids have to be positive: " + id);
+        }
+        if (content.length == 0 || content.length > MAX_SIZE) {
+            throw new IllegalArgumentException("Dictionary size has to be between 1 and " + MAX_SIZE + " bytes: " + content.length);
+        }
+    }
+
+    /**
+     * Registers the dictionary for the given packet type. Frames of the type which are below the compression
+     * threshold are compressed with it from now on.
+     *
+     * @param type       the packet type
+     * @param dictionary the dictionary
+     * @throws IllegalStateException if another dictionary with the same id is registered
+     */
+    public static void register(@NotNull Class<? extends Packet> type, @NotNull CompressionDictionary dictionary) {
+        var existing = byId.putIfAbsent(dictionary.id(), dictionary);
+        if (existing != null && existing != dictionary) {
+            throw new IllegalStateException("Dictionary id " + dictionary.id() + " is already registered");
+        }
+        byType.put(type, dictionary);
+    }
+
+    /**
+     * Returns the dictionary with the given id.
+     *
+     * @param id the id read from the frame header
+     * @return the dictionary, or null if it is not registered
+     */
+    public static @Nullable CompressionDictionary byId(int id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Returns the current dictionary of the given packet type.
+     *
+     * @param type the packet type
+     * @return the dictionary, or null if the type has none
+     */
+    public static @Nullable CompressionDictionary of(@NotNull Class<?> type) {
+        return byType.get(type);
+    }
+
+    /**
+     * Returns the ids of all registered dictionaries.
+     *
+     * @return the registered ids
+     */
+    public static int @NotNull [] registeredIds() {
+        return byId.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+}
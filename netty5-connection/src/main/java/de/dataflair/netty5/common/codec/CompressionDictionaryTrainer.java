@@ -0,0 +1,136 @@
+package de.dataflair.netty5.common.codec;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trains a {@link CompressionDictionary} from captured packet payloads.
+ * <p>
+ * The payloads are cut into segments, which are scored by how many payloads contain their {@value #K}-byte
+ * substrings. The best segments are picked greedily until the dictionary is full, substrings which are already
+ * covered no longer count. As deflate encodes near references shorter, the best segment ends up last.
+ * Training is meant to run offline, it takes time proportional to the sample size times the segment count.
+ */
+public final class CompressionDictionaryTrainer {
+    private static final int K = 6;
+    private static final int SEGMENT_SIZE = 48;
+
+    private final List<byte[]> samples = new ArrayList<>();
+
+    /**
+     * Adds the readable bytes of a captured payload as sample, without consuming them.
+     *
+     * @param payload the captured payload
+     * @return this trainer
+     */
+    public @NotNull CompressionDictionaryTrainer addSample(@NotNull CodecBuffer payload) {
+        var origin = payload.origin();
+        var bytes = new byte[origin.readableBytes()];
+        origin.copyInto(origin.readerOffset(), bytes, 0, bytes.length);
+        return this.addSample(bytes);
+    }
+
+    /**
+     * Adds a captured payload as sample.
+     *
+     * @param payload the captured payload
+     * @return this trainer
+     */
+    public @NotNull CompressionDictionaryTrainer addSample(byte @NotNull [] payload) {
+        if (payload.length >= K) {
+            this.samples.add(payload);
+        }
+        return this;
+    }
+
+    /**
+     * Trains the dictionary.
+     *
+     * @param id   the id of the dictionary
+     * @param size the maximum size of the dictionary in bytes
+     * @return the trained dictionary
+     * @throws IllegalStateException if the samples share no content
+     */
+    public @NotNull CompressionDictionary train(int id, int size) {
+        var maxSize = Math.min(size, CompressionDictionary.MAX_SIZE);
+        var frequencies = this.frequencies();
+        var segments = new ArrayList<byte[]>();
+        var dictionarySize = 0;
+
+        while (dictionarySize < maxSize) {
+            var bestScore = 0L;
+            byte[] bestSample = null;
+            var bestOffset = 0;
+            for (var sample : this.samples) {
+                for (var offset = 0; offset + K <= sample.length; offset += K) {
+                    var score = this.score(sample, offset, frequencies);
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestSample = sample;
+                        bestOffset = offset;
+                    }
+                }
+            }
+            // a substring only found in a single payload does not help other packets
+            if (bestSample == null || bestScore <= (SEGMENT_SIZE - K + 1)) {
+                break;
+            }
+
+            var length = Math.min(Math.min(SEGMENT_SIZE, bestSample.length - bestOffset), maxSize - dictionarySize);
+            var segment = new byte[length];
+            System.arraycopy(bestSample, bestOffset, segment, 0, length);
+            for (var i = 0; i + K <= length; i++) {
+                frequencies.remove(kmer(segment, i));
+            }
+            segments.add(segment);
+            dictionarySize += length;
+        }
+
+        if (segments.isEmpty()) {
+            throw new IllegalStateException("The samples share no content to build a dictionary from");
+        }
+        var content = new ByteArrayOutputStream(dictionarySize);
+        for (var i = segments.size() - 1; i >= 0; i--) {
+            content.writeBytes(segments.get(i));
+        }
+        return new CompressionDictionary(id, content.toByteArray());
+    }
+
+    private Map<Long, Integer> frequencies() {
+        var frequencies = new HashMap<Long, Integer>();
+        var seen = new HashSet<Long>();
+        for (var sample : this.samples) {
+            seen.clear();
+            for (var i = 0; i + K <= sample.length; i++) {
+                var kmer = kmer(sample, i);
+                if (seen.add(kmer)) {
+                    frequencies.merge(kmer, 1, Integer::sum);
+                }
+            }
+        }
+        return frequencies;
+    }
+
+    private long score(byte[] sample, int offset, Map<Long, Integer> frequencies) {
+        var score = 0L;
+        var end = Math.min(offset + SEGMENT_SIZE, sample.length);
+        for (var i = offset; i + K <= end; i++) {
+            score += frequencies.getOrDefault(kmer(sample, i), 0);
+        }
+        return score;
+    }
+
+    private static long kmer(byte[] bytes, int offset) {
+        var kmer = 0L;
+        for (var i = 0; i < K; i++) {
+            kmer = (kmer << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return kmer;
+    }
+}
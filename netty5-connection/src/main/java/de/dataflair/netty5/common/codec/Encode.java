@@ -0,0 +1,26 @@
+package de.dataflair.netty5.common.codec;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field which is written by the codec generated for {@link GenerateCodec}.
+ * <p>
+ * The field must neither be static nor final, private fields are accessed through a
+ * {@link java.lang.invoke.VarHandle}. Supported are primitives, {@link String},
+ * {@link java.util.UUID}, enums, primitive arrays, {@link de.dataflair.netty5.common.collection.IntArrayList},
+ * lists of strings or unique ids, and {@link CodecBuffer.WriteReadStream} implementations with a no-args
+ * constructor.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface Encode {
+    /**
+     * Whether the field may be null. Nullable fields are prefixed with a presence flag.
+     *
+     * @return true if the field may be null
+     */
+    boolean nullable() default false;
+}
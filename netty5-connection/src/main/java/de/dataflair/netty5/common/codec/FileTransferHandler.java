@@ -0,0 +1,162 @@
+package de.dataflair.netty5.common.codec;
+
+import de.dataflair.netty5.common.packet.PacketRegistry;
+import de.dataflair.netty5.common.packet.file.FileSegmentPacket;
+import de.dataflair.netty5.common.packet.file.FileTransfer;
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.ChannelHandler;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.channel.DefaultFileRegion;
+import io.netty5.util.concurrent.Future;
+import io.netty5.util.concurrent.Promise;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.CRC32C;
+
+/**
+ * Sends {@link FileTransfer}s in segments, in front of the framing, so the segment data is written straight from
+ * the file.
+ * <p>
+ * Every segment is written as a complete frame by hand: the length prefix, the raw compression flag if the channel
+ * compresses, the header and metadata of a {@link FileSegmentPacket} and finally the segment data as
+ * {@link DefaultFileRegion}. The receiver decodes it like any other packet. The next segment is written once the
+ * previous one was, so other packets are interleaved with the transfer and at most one segment is in flight. The
+ * checksum of a segment is computed off the event loop before the segment is written.
+ */
+public final class FileTransferHandler implements ChannelHandler {
+    // opens the files and computes the checksums, which read from the disk and must not block the event loop
+    private static final Executor FILE_READER = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("netty5-file-", 0).factory());
+    private final int segmentSize;
+
+    /**
+     * @param segmentSize the maximum size of the data of a segment, which has to fit into a frame of the peer
+     */
+    public FileTransferHandler(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    @Override
+    public Future<Void> write(ChannelHandlerContext ctx, Object msg) {
+        if (!(msg instanceof FileTransfer transfer)) {
+            return ctx.write(msg);
+        }
+
+        Promise<Void> promise = ctx.newPromise();
+        try {
+            FILE_READER.execute(() -> {
+                FileChannel file = null;
+                try {
+                    // only used to compute the checksums, every region opens the file on its own
+                    file = FileChannel.open(transfer.file(), StandardOpenOption.READ);
+                    var totalLength = file.size();
+                    var length = this.segmentLength(totalLength, transfer.offset());
+                    var checksum = checksum(file, transfer.offset(), length);
+                    var source = file;
+                    ctx.executor().execute(() -> this.writeSegment(ctx, transfer, source, totalLength, transfer.offset(), length, checksum, promise));
+                } catch (IOException | RuntimeException e) {
+                    if (file != null) {
+                        close(file);
+                    }
+                    promise.tryFailure(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            promise.tryFailure(e);
+        }
+        return promise.asFuture();
+    }
+
+    private void writeSegment(ChannelHandlerContext ctx, FileTransfer transfer, FileChannel file, long totalLength,
+                              long position, int length, int checksum, Promise<Void> promise) {
+        Future<Void> future;
+        try {
+            var segment = new FileSegmentPacket(transfer.transferId(), transfer.name(), position, totalLength, checksum);
+            ctx.write(this.segmentHeader(ctx, segment, length));
+            future = ctx.writeAndFlush(new DefaultFileRegion(transfer.file().toFile(), position, length));
+        } catch (RuntimeException e) {
+            close(file);
+            promise.tryFailure(e);
+            return;
+        }
+
+        future.addListener(result -> {
+            if (!result.isSuccess()) {
+                close(file);
+                promise.tryFailure(result.cause());
+            } else if (position + length >= totalLength) {
+                close(file);
+                promise.trySuccess(null);
+            } else {
+                this.writeNextSegment(ctx, transfer, file, totalLength, position + length, promise);
+            }
+        });
+    }
+
+    private void writeNextSegment(ChannelHandlerContext ctx, FileTransfer transfer, FileChannel file, long totalLength,
+                                  long position, Promise<Void> promise) {
+        var length = this.segmentLength(totalLength, position);
+        try {
+            FILE_READER.execute(() -> {
+                try {
+                    var checksum = checksum(file, position, length);
+                    ctx.executor().execute(() -> this.writeSegment(ctx, transfer, file, totalLength, position, length, checksum, promise));
+                } catch (IOException | RuntimeException e) {
+                    close(file);
+                    promise.tryFailure(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            close(file);
+            promise.tryFailure(e);
+        }
+    }
+
+    private int segmentLength(long totalLength, long position) {
+        return (int) Math.min(this.segmentSize, Math.max(0, totalLength - position));
+    }
+
+    private Buffer segmentHeader(ChannelHandlerContext ctx, FileSegmentPacket segment, int length) {
+        var mapping = PacketRegistry.mapping(ctx.channel());
+        var packetId = mapping == null ? PacketRegistry.UNKNOWN_ID : mapping.id(FileSegmentPacket.class);
+        var protocol = segment.buffer().protocol();
+
+        var out = ctx.bufferAllocator().allocate(Integer.BYTES + 1 + Integer.BYTES + segment.estimateSize() +
+                (packetId == PacketRegistry.UNKNOWN_ID ? Integer.BYTES + CodecBuffer.utf8Length(FileSegmentPacket.class.getName()) : 0));
+        var buffer = new CodecBuffer(out, protocol);
+        // the length prefix is completed below, it covers the segment data as well
+        out.skipWritableBytes(Integer.BYTES);
+        if (FrameCompressionHandler.compression(ctx.channel()).algorithm() != FrameCompression.Algorithm.NONE) {
+            out.writeByte((byte) FrameCompression.Algorithm.NONE.ordinal());
+        }
+        buffer.writeVarInt(packetId << 1 | protocol.ordinal());
+        if (packetId == PacketRegistry.UNKNOWN_ID) {
+            buffer.writeString(FileSegmentPacket.class.getName());
+        }
+        segment.write(buffer);
+        segment.release();
+        out.setInt(0, out.readableBytes() - Integer.BYTES + length);
+        return out;
+    }
+
+    private static int checksum(FileChannel file, long position, int length) throws IOException {
+        var crc = new CRC32C();
+        if (length > 0) {
+            // mapped, so the data is read through the page cache without a copy on the heap
+            crc.update(file.map(FileChannel.MapMode.READ_ONLY, position, length));
+        }
+        return (int) crc.getValue();
+    }
+
+    private static void close(FileChannel file) {
+        try {
+            file.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package de.dataflair.netty5.common.codec;
+
+import de.dataflair.netty5.common.collection.LongObjectHashMap;
+import de.dataflair.netty5.common.packet.Packet;
+import de.dataflair.netty5.common.packet.PacketFactory;
+import de.dataflair.netty5.common.packet.PacketRegistry;
+import io.netty5.buffer.Buffer;
+import io.netty5.buffer.CompositeBuffer;
+import io.netty5.channel.Channel;
+import io.netty5.channel.ChannelHandler;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.handler.codec.DecoderException;
+import io.netty5.handler.codec.TooLongFrameException;
+import io.netty5.util.concurrent.Future;
+import io.netty5.util.concurrent.Promise;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Splits oversized outbound frames into chunks and reassembles inbound chunks, between the compression and the
+ * packet codecs.
+ * <p>
+ * Chunk frames start with the reserved header {@link PacketRegistry#CHUNK_ID}, whose lowest bit marks the last
+ * chunk, followed by the varint id of the transfer. Chunks are not written all at once: after each other outbound
+ * message one chunk of the pending transfers follows, and flushes fill the channel with chunks up to its high
+ * water mark. A large packet therefore never holds back the rest of the traffic for long. At most
+ * {@link #MAX_CONCURRENT_TRANSFERS} transfers are in progress, further frames wait until one of them completed.
+ * <p>
+ * The receiver appends the chunks of a transfer to a composite buffer without copying and passes the complete
+ * frame on. Packet types with a registered {@link ChunkConsumer} are streamed to it chunk by chunk instead.
+ */
+public final class FrameChunkHandler implements ChannelHandler {
+    /**
+     * Upper bound of transfers which the peer may have in progress at the same time.
+     */
+    public static final int MAX_CONCURRENT_TRANSFERS = 64;
+
+    private static final Map<Class<?>, ChunkConsumer> consumers = new ConcurrentHashMap<>();
+
+    private final int chunkSize;
+    private final int maxFrameLength;
+    private final long maxPayloadLength;
+    private final ArrayDeque<OutboundTransfer> outbound = new ArrayDeque<>();
+    // transfers beyond the limit of the peer, started once an active transfer completed
+    private final ArrayDeque<OutboundTransfer> waiting = new ArrayDeque<>();
+    private final LongObjectHashMap<InboundTransfer> inbound = new LongObjectHashMap<>();
+    private int nextTransferId;
+
+    /**
+     * @param chunkSize        the maximum size of an outbound chunk, {@code 0} disables the chunking
+     * @param maxFrameLength   the maximum length of a single frame, larger outbound frames fail if chunking is disabled
+     * @param maxPayloadLength the maximum length of a reassembled inbound frame
+     */
+    public FrameChunkHandler(int chunkSize, int maxFrameLength, long maxPayloadLength) {
+        this.chunkSize = chunkSize;
+        this.maxFrameLength = maxFrameLength;
+        this.maxPayloadLength = maxPayloadLength;
+    }
+
+    /**
+     * Streams the received chunks of the given packet type to the consumer instead of reassembling them.
+     * Packets of this type which fit into a single frame are still received as packets.
+     *
+     * @param type     the packet type
+     * @param consumer the consumer of the chunks
+     */
+    public static void stream(@NotNull Class<? extends Packet> type, @NotNull ChunkConsumer consumer) {
+        consumers.put(type, consumer);
+    }
+
+    @Override
+    public Future<Void> write(ChannelHandlerContext ctx, Object msg) {
+        if (!(msg instanceof Buffer frame) || frame.readableBytes() <= this.maxFrameLength &&
+                (this.chunkSize <= 0 || frame.readableBytes() <= this.chunkSize)) {
+            var future = ctx.write(msg);
+            // interleave the pending transfers with the normal traffic
+            this.writeChunk(ctx);
+            return future;
+        }
+
+        if (this.chunkSize <= 0) {
+            var length = frame.readableBytes();
+            frame.close();
+            return ctx.newFailedFuture(new TooLongFrameException("Frame of " + length + " bytes exceeds " + this.maxFrameLength + " bytes"));
+        }
+
+        Promise<Void> promise = ctx.newPromise();
+        var transfer = new OutboundTransfer(this.nextTransferId++ & Integer.MAX_VALUE, frame, promise);
+        if (this.outbound.size() >= MAX_CONCURRENT_TRANSFERS) {
+            this.waiting.add(transfer);
+            return promise.asFuture();
+        }
+        this.outbound.add(transfer);
+        this.writeChunk(ctx);
+        return promise.asFuture();
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        while (!this.outbound.isEmpty() && ctx.channel().isWritable()) {
+            this.writeChunk(ctx);
+        }
+        ctx.flush();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        // queued packets are written first, their flush continues the transfers
+        ctx.fireChannelWritabilityChanged();
+        if (ctx.channel().isWritable() && !this.outbound.isEmpty()) {
+            this.flush(ctx);
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof Buffer frame) || frame.readableBytes() == 0) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+
+        var readerOffset = frame.readerOffset();
+        var header = new CodecBuffer(frame).readVarInt();
+        if (header >>> 1 != PacketRegistry.CHUNK_ID) {
+            frame.readerOffset(readerOffset);
+            ctx.fireChannelRead(frame);
+            return;
+        }
+
+        try (frame) {
+            this.readChunk(ctx, frame, new CodecBuffer(frame).readVarInt(), (header & 1) == 1);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        this.release();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        this.release();
+    }
+
+    private void writeChunk(ChannelHandlerContext ctx) {
+        var transfer = this.outbound.poll();
+        if (transfer == null) {
+            return;
+        }
+
+        var data = transfer.frame().readSplit(Math.min(this.chunkSize, transfer.frame().readableBytes()));
+        var last = transfer.frame().readableBytes() == 0;
+        var header = ctx.bufferAllocator().allocate(2 * Integer.BYTES + 2);
+        new CodecBuffer(header).writeVarInt(PacketRegistry.CHUNK_ID << 1 | (last ? 1 : 0)).writeVarInt(transfer.id());
+        var future = ctx.write(ctx.bufferAllocator().compose(List.of(header.send(), data.send())));
+
+        if (last) {
+            transfer.frame().close();
+            future.cascadeTo(transfer.promise());
+            this.startWaiting();
+            return;
+        }
+        // round robin between the pending transfers, queued before the listener, which may run right away
+        this.outbound.add(transfer);
+        future.addListener(result -> {
+            if (!result.isSuccess() && transfer.promise().tryFailure(result.cause())) {
+                if (this.outbound.remove(transfer)) {
+                    this.startWaiting();
+                }
+                transfer.frame().close();
+            }
+        });
+    }
+
+    private void startWaiting() {
+        var transfer = this.waiting.poll();
+        if (transfer != null) {
+            this.outbound.add(transfer);
+        }
+    }
+
+    private void readChunk(ChannelHandlerContext ctx, Buffer frame, int transferId, boolean last) throws Exception {
+        var transfer = this.inbound.get(transferId);
+        if (transfer == null) {
+            if (this.inbound.size() >= MAX_CONCURRENT_TRANSFERS) {
+                throw new DecoderException("More than " + MAX_CONCURRENT_TRANSFERS + " chunked transfers in progress");
+            }
+            var consumer = consumers.isEmpty() ? null : this.consumer(ctx.channel(), frame);
+            transfer = new InboundTransfer(consumer, consumer == null ? ctx.bufferAllocator().compose() : null);
+            this.inbound.put(transferId, transfer);
+        }
+
+        transfer.length += frame.readableBytes();
+        if (transfer.length > this.maxPayloadLength) {
+            this.inbound.remove(transferId);
+            transfer.close();
+            throw new TooLongFrameException("Chunked frame exceeds " + this.maxPayloadLength + " bytes");
+        }
+
+        if (transfer.consumer != null) {
+            if (last) {
+                this.inbound.remove(transferId);
+            }
+            transfer.consumer.accept(ctx.channel(), transferId, frame, last);
+            return;
+        }
+
+        transfer.buffer.extendWith(frame.readSplit(frame.readableBytes()).send());
+        if (last) {
+            this.inbound.remove(transferId);
+            ctx.fireChannelRead(transfer.buffer);
+        }
+    }
+
+    /**
+     * Finds the consumer of the packet type in the header of the first chunk. The header is skipped if a consumer
+     * is registered, so the consumer only receives the packet content.
+     */
+    private @Nullable ChunkConsumer consumer(Channel channel, Buffer frame) {
+        var readerOffset = frame.readerOffset();
+        try {
+            var header = new CodecBuffer(frame).readVarInt();
+            var buffer = new CodecBuffer(frame, (header & 1) == 1 ? CodecBuffer.Protocol.COMPACT : CodecBuffer.Protocol.LEGACY);
+            Class<?> type;
+            if (header >>> 1 == PacketRegistry.UNKNOWN_ID) {
+                type = PacketFactory.resolve(buffer.readString());
+            } else {
+                var mapping = PacketRegistry.mapping(channel);
+                type = mapping == null ? null : mapping.type(header >>> 1);
+            }
+
+            var consumer = type == null ? null : consumers.get(type);
+            if (consumer != null) {
+                return consumer;
+            }
+        } catch (ClassNotFoundException | RuntimeException ignored) {
+            // the decoder reports broken headers once the frame is complete
+        }
+        frame.readerOffset(readerOffset);
+        return null;
+    }
+
+    private void release() {
+        OutboundTransfer outboundTransfer;
+        while ((outboundTransfer = this.outbound.poll()) != null || (outboundTransfer = this.waiting.poll()) != null) {
+            outboundTransfer.frame().close();
+            outboundTransfer.promise().tryFailure(new ClosedChannelException());
+        }
+        this.inbound.forEach((_, transfer) -> transfer.close());
+        this.inbound.clear();
+    }
+
+    /**
+     * Receives the chunks of a streamed packet. The chunk buffer is closed once the consumer returns.
+     */
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        /**
+         * @param channel    the channel which received the chunk
+         * @param transferId the id of the transfer, which is unique among the transfers in progress
+         * @param chunk      the chunk content, the first chunk starts with the packet content
+         * @param last       whether this is the last chunk of the transfer
+         */
+        void accept(@NotNull Channel channel, int transferId, @NotNull Buffer chunk, boolean last);
+    }
+
+    private record OutboundTransfer(int id, Buffer frame, Promise<Void> promise) {
+    }
+
+    private static final class InboundTransfer {
+        private final @Nullable ChunkConsumer consumer;
+        private final @Nullable CompositeBuffer buffer;
+        private long length;
+
+        private InboundTransfer(@Nullable ChunkConsumer consumer, @Nullable CompositeBuffer buffer) {
+            this.consumer = consumer;
+            this.buffer = buffer;
+        }
+
+        private void close() {
+            if (this.buffer != null) {
+                this.buffer.close();
+            }
+        }
+    }
+}
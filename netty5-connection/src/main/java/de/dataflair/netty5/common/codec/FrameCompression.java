@@ -0,0 +1,48 @@
+package de.dataflair.netty5.common.codec;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Compression settings of a connection. The client announces them within its
+ * {@link de.dataflair.netty5.common.packet.auth.AuthPacket} and both peers apply them to every following frame,
+ * see {@link FrameCompressionHandler}.
+ *
+ * @param algorithm the algorithm used for frames which reach the threshold
+ * @param threshold the minimum frame size in bytes which is compressed
+ */
+public record FrameCompression(@NotNull Algorithm algorithm, int threshold) {
+    /**
+     * Frames are transmitted as they are, without the compression flag.
+     */
+    public static final FrameCompression NONE = new FrameCompression(Algorithm.NONE, Integer.MAX_VALUE);
+    public static final int DEFAULT_THRESHOLD = 512;
+
+    public FrameCompression {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Negative compression threshold: " + threshold);
+        }
+    }
+
+    public static @NotNull FrameCompression deflate() {
+        return new FrameCompression(Algorithm.DEFLATE, DEFAULT_THRESHOLD);
+    }
+
+    public static @NotNull FrameCompression fast() {
+        return new FrameCompression(Algorithm.FAST, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Compression algorithms. The ordinal is the flag byte in front of every frame and must not change.
+     */
+    public enum Algorithm {
+        NONE,
+        /**
+         * Raw deflate of {@link java.util.zip.Deflater}, for the best ratio on bulk payloads.
+         */
+        DEFLATE,
+        /**
+         * Snappy block compression, which trades ratio for much lower CPU cost.
+         */
+        FAST
+    }
+}
@@ -0,0 +1,365 @@
+package de.dataflair.netty5.common.codec;
+
+import de.dataflair.netty5.common.packet.PacketRegistry;
+import io.netty5.buffer.Buffer;
+import io.netty5.channel.Channel;
+import io.netty5.channel.ChannelHandler;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.handler.codec.DecoderException;
+import io.netty5.handler.codec.compression.Snappy;
+import io.netty5.util.AttributeKey;
+import io.netty5.util.concurrent.Future;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses outbound and decompresses inbound frames, between the length framing and the packet codecs.
+ * <p>
+ * Until {@link #enable(Channel, FrameCompression)} was called for the channel, frames pass unchanged. Afterwards
+ * every frame starts with the ordinal of its {@link FrameCompression.Algorithm}. Frames below the threshold, and
+ * frames which would not get smaller, are sent raw behind {@link FrameCompression.Algorithm#NONE}. Compressed
+ * frames carry their decompressed size as varint in front of the compressed data. {@link FrameCompression.Algorithm#FAST}
+ * splits the data into length-prefixed Snappy blocks.
+ * <p>
+ * Frames below the threshold are deflated with the {@link CompressionDictionary} of their packet type instead, if
+ * the peer holds it. These frames carry {@link #DICTIONARY_FLAG} and the dictionary id in front of the size.
+ */
+public final class FrameCompressionHandler implements ChannelHandler {
+    /**
+     * Input size of a single Snappy block. Larger inputs overflow the offsets of the Snappy encoder.
+     */
+    private static final int SNAPPY_BLOCK_SIZE = 32 * 1024;
+    private static final int BLOCK_LENGTH_BYTES = 3;
+
+    /**
+     * Flag of frames which are compressed with a {@link CompressionDictionary}, following the algorithm ordinals.
+     */
+    public static final int DICTIONARY_FLAG = 3;
+
+    private static final AttributeKey<FrameCompression> COMPRESSION = AttributeKey.valueOf(FrameCompressionHandler.class, "compression");
+    private static final AttributeKey<Set<Integer>> PEER_DICTIONARIES = AttributeKey.valueOf(FrameCompressionHandler.class, "peerDictionaries");
+
+    private final int maxFrameLength;
+    // created on first use, as most connections only use one algorithm
+    private Deflater deflater;
+    private Inflater inflater;
+    private Snappy snappy;
+
+    /**
+     * @param maxFrameLength the maximum decompressed size of a frame, so a small frame can neither claim an arbitrary
+     *                       allocation nor bypass the frame limit
+     */
+    public FrameCompressionHandler(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    /**
+     * Applies the given compression to all following frames of the channel, in both directions.
+     *
+     * @param channel     the channel
+     * @param compression the negotiated compression
+     */
+    public static void enable(@NotNull Channel channel, @NotNull FrameCompression compression) {
+        channel.attr(COMPRESSION).set(compression);
+    }
+
+    /**
+     * Sets the dictionaries which the peer of the channel holds. Only these are used for outbound frames.
+     *
+     * @param channel       the channel
+     * @param dictionaryIds the ids of the dictionaries of the peer
+     */
+    public static void enableDictionaries(@NotNull Channel channel, int @NotNull [] dictionaryIds) {
+        var ids = new HashSet<Integer>();
+        for (var id : dictionaryIds) {
+            ids.add(id);
+        }
+        channel.attr(PEER_DICTIONARIES).set(Set.copyOf(ids));
+    }
+
+    /**
+     * Returns the compression which was negotiated for the channel.
+     *
+     * @param channel the channel
+     * @return the compression, or {@link FrameCompression#NONE} if none was negotiated
+     */
+    public static @NotNull FrameCompression compression(@NotNull Channel channel) {
+        var compression = channel.attr(COMPRESSION).get();
+        return compression == null ? FrameCompression.NONE : compression;
+    }
+
+    @Override
+    public Future<Void> write(ChannelHandlerContext ctx, Object msg) {
+        var compression = compression(ctx.channel());
+        if (!(msg instanceof Buffer frame) || compression.algorithm() == FrameCompression.Algorithm.NONE) {
+            return ctx.write(msg);
+        }
+
+        Buffer compressed;
+        try {
+            compressed = frame.readableBytes() < compression.threshold()
+                    ? this.compressWithDictionary(ctx, frame)
+                    : this.compress(ctx, frame, compression.algorithm());
+        } catch (Exception e) {
+            frame.close();
+            return ctx.newFailedFuture(e);
+        }
+
+        if (compressed != null) {
+            frame.close();
+            return ctx.write(compressed);
+        }
+
+        var flag = ctx.bufferAllocator().allocate(1).writeByte((byte) FrameCompression.Algorithm.NONE.ordinal());
+        return ctx.write(ctx.bufferAllocator().compose(List.of(flag.send(), frame.send())));
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof Buffer frame) || compression(ctx.channel()).algorithm() == FrameCompression.Algorithm.NONE) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+
+        Buffer decompressed;
+        try (frame) {
+            var flag = frame.readByte();
+            if (flag == FrameCompression.Algorithm.NONE.ordinal()) {
+                decompressed = frame.readSplit(frame.readableBytes());
+            } else {
+                decompressed = this.decompress(ctx, frame, flag);
+            }
+        }
+        ctx.fireChannelRead(decompressed);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        if (this.deflater != null) {
+            this.deflater.end();
+        }
+        if (this.inflater != null) {
+            this.inflater.end();
+        }
+    }
+
+    private @Nullable Buffer compress(ChannelHandlerContext ctx, Buffer frame, FrameCompression.Algorithm algorithm) {
+        var length = frame.readableBytes();
+        // the compressed frame has to be smaller than the raw one, so it never needs more than this
+        var out = ctx.bufferAllocator().allocate(1 + length);
+        out.writeByte((byte) algorithm.ordinal());
+        new CodecBuffer(out).writeVarInt(length);
+
+        var readerOffset = frame.readerOffset();
+        var smaller = switch (algorithm) {
+            case DEFLATE -> this.deflate(frame, out);
+            case FAST -> this.snappyCompress(frame, out, length);
+            case NONE -> false;
+        };
+        if (!smaller) {
+            frame.readerOffset(readerOffset);
+            out.close();
+            return null;
+        }
+        return out;
+    }
+
+    private @Nullable Buffer compressWithDictionary(ChannelHandlerContext ctx, Buffer frame) {
+        var dictionary = this.dictionary(ctx.channel(), frame);
+        if (dictionary == null) {
+            return null;
+        }
+
+        var length = frame.readableBytes();
+        var out = ctx.bufferAllocator().allocate(1 + length);
+        out.writeByte((byte) DICTIONARY_FLAG);
+        new CodecBuffer(out).writeVarInt(dictionary.id()).writeVarInt(length);
+        if (out.writableBytes() == 0 || !this.deflate(frame, out, dictionary)) {
+            out.close();
+            return null;
+        }
+        return out;
+    }
+
+    private @Nullable CompressionDictionary dictionary(Channel channel, Buffer frame) {
+        var peerDictionaries = channel.attr(PEER_DICTIONARIES).get();
+        var mapping = PacketRegistry.mapping(channel);
+        if (peerDictionaries == null || mapping == null || frame.readableBytes() == 0) {
+            return null;
+        }
+
+        // the packet type is taken from the id in the packet header, the class name of unknown ids is not parsed
+        var readerOffset = frame.readerOffset();
+        int header;
+        try {
+            header = new CodecBuffer(frame).readVarInt();
+        } catch (RuntimeException e) {
+            return null;
+        } finally {
+            frame.readerOffset(readerOffset);
+        }
+        var type = mapping.type(header >>> 1);
+        var dictionary = type == null ? null : CompressionDictionary.of(type);
+        return dictionary != null && peerDictionaries.contains(dictionary.id()) ? dictionary : null;
+    }
+
+    private boolean deflate(Buffer frame, Buffer out) {
+        return this.deflate(frame, out, null);
+    }
+
+    private boolean deflate(Buffer frame, Buffer out, @Nullable CompressionDictionary dictionary) {
+        if (this.deflater == null) {
+            this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+        this.deflater.reset();
+        if (dictionary != null) {
+            this.deflater.setDictionary(dictionary.content());
+        }
+        try (var components = frame.forEachComponent()) {
+            for (var component = components.firstReadable(); component != null; component = component.nextReadable()) {
+                this.deflater.setInput(component.readableBuffer());
+                while (!this.deflater.needsInput()) {
+                    if (!this.deflateInto(out)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        this.deflater.finish();
+        while (!this.deflater.finished()) {
+            if (!this.deflateInto(out)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean deflateInto(Buffer out) {
+        if (out.writableBytes() == 0) {
+            return false;
+        }
+        int written;
+        try (var components = out.forEachComponent()) {
+            written = this.deflater.deflate(components.firstWritable().writableBuffer());
+        }
+        out.skipWritableBytes(written);
+        return true;
+    }
+
+    private boolean snappyCompress(Buffer frame, Buffer out, int length) {
+        if (this.snappy == null) {
+            this.snappy = new Snappy();
+        }
+        // every block is prefixed with its compressed size as padded varint, as it is only known afterwards
+        while (frame.readableBytes() > 0) {
+            var lengthOffset = out.writerOffset();
+            out.ensureWritable(BLOCK_LENGTH_BYTES);
+            out.skipWritableBytes(BLOCK_LENGTH_BYTES);
+            this.snappy.reset();
+            this.snappy.encode(frame, out, Math.min(frame.readableBytes(), SNAPPY_BLOCK_SIZE));
+            var blockLength = out.writerOffset() - lengthOffset - BLOCK_LENGTH_BYTES;
+            for (var i = 0; i < BLOCK_LENGTH_BYTES; i++) {
+                var last = i == BLOCK_LENGTH_BYTES - 1;
+                out.setByte(lengthOffset + i, (byte) (((blockLength >>> (7 * i)) & 0x7F) | (last ? 0 : 0x80)));
+            }
+            if (out.readableBytes() > length) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Buffer decompress(ChannelHandlerContext ctx, Buffer frame, byte flag) throws DataFormatException {
+        var algorithms = FrameCompression.Algorithm.values();
+        if ((flag <= 0 || flag >= algorithms.length) && flag != DICTIONARY_FLAG) {
+            throw new DecoderException("Unknown compression flag " + flag);
+        }
+        CompressionDictionary dictionary = null;
+        if (flag == DICTIONARY_FLAG) {
+            var dictionaryId = new CodecBuffer(frame).readVarInt();
+            dictionary = CompressionDictionary.byId(dictionaryId);
+            if (dictionary == null) {
+                throw new DecoderException("Unknown compression dictionary " + dictionaryId);
+            }
+        }
+        var length = new CodecBuffer(frame).readVarInt();
+        if (length < 0 || length > this.maxFrameLength) {
+            throw new DecoderException("Invalid decompressed frame size " + length);
+        }
+
+        // one spare byte lets the inflater reach the end of the stream when the output is exactly full
+        var out = ctx.bufferAllocator().allocate(length + 1);
+        try {
+            if (dictionary != null) {
+                this.inflate(frame, out, dictionary);
+            } else if (algorithms[flag] == FrameCompression.Algorithm.DEFLATE) {
+                this.inflate(frame, out, null);
+            } else {
+                this.snappyDecompress(frame, out, length);
+            }
+            if (out.readableBytes() != length) {
+                throw new DecoderException("Decompressed " + out.readableBytes() + " bytes, but the frame announced " + length);
+            }
+            return out;
+        } catch (Exception e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    private void inflate(Buffer frame, Buffer out, @Nullable CompressionDictionary dictionary) throws DataFormatException {
+        if (this.inflater == null) {
+            this.inflater = new Inflater(true);
+        }
+        this.inflater.reset();
+        if (dictionary != null) {
+            // raw inflate never asks for the dictionary, it has to be set upfront
+            this.inflater.setDictionary(dictionary.content());
+        }
+        try (var components = frame.forEachComponent()) {
+            for (var component = components.firstReadable(); component != null; component = component.nextReadable()) {
+                this.inflater.setInput(component.readableBuffer());
+                while (!this.inflater.finished() && !this.inflater.needsInput()) {
+                    if (out.writableBytes() == 0 || this.inflater.needsDictionary()) {
+                        throw new DecoderException("Compressed frame does not match its announced size");
+                    }
+                    int written;
+                    try (var outComponents = out.forEachComponent()) {
+                        written = this.inflater.inflate(outComponents.firstWritable().writableBuffer());
+                    }
+                    out.skipWritableBytes(written);
+                }
+            }
+        }
+        if (!this.inflater.finished()) {
+            throw new DecoderException("Truncated compressed frame");
+        }
+    }
+
+    private void snappyDecompress(Buffer frame, Buffer out, int length) {
+        if (this.snappy == null) {
+            this.snappy = new Snappy();
+        }
+        var codecBuffer = new CodecBuffer(frame);
+        while (frame.readableBytes() > 0) {
+            try (var block = frame.readSplit(codecBuffer.readVarInt())) {
+                // Snappy allocates by the preamble of the block, which has to stay within the checked size
+                var readerOffset = block.readerOffset();
+                var preamble = new CodecBuffer(block).readVarInt();
+                block.readerOffset(readerOffset);
+                if (preamble <= 0 || preamble > SNAPPY_BLOCK_SIZE || preamble > length - out.readableBytes()) {
+                    throw new DecoderException("Compressed frame does not match its announced size");
+                }
+                this.snappy.reset();
+                this.snappy.decode(block, out);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package de.dataflair.netty5.common.codec;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates a codec for the {@link Encode} fields of the annotated class at compile time.
+ * <p>
+ * The annotation processor of the {@code netty5-processor} module creates a class named {@code <Name>Codec}
+ * in the same package, with the static methods {@code write(packet, buffer)}, {@code read(packet, buffer)}
+ * and {@code size(packet, protocol)}. The fields are written in declaration order with straight-line code.
+ * A lazily serialized packet delegates to it like this:
+ * <pre>{@code
+ * @GenerateCodec
+ * public class PositionPacket extends Packet implements CodecBuffer.WriteReadStream {
+ *     @Encode String world;
+ *     @Encode double x, y, z;
+ *
+ *     public PositionPacket(@NotNull CodecBuffer buffer) {
+ *         super(buffer);
+ *         this.readBuffer(buffer);
+ *     }
+ *
+ *     public void writeBuffer(@NotNull CodecBuffer codecBuffer) {
+ *         PositionPacketCodec.write(this, codecBuffer);
+ *     }
+ *
+ *     public void readBuffer(@NotNull CodecBuffer codecBuffer) {
+ *         PositionPacketCodec.read(this, codecBuffer);
+ *     }
+ *
+ *     public int encodedSize(@NotNull CodecBuffer.Protocol protocol) {
+ *         return PositionPacketCodec.size(this, protocol);
+ *     }
+ * }
+ * }</pre>
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateCodec {
+}
@@ -0,0 +1,147 @@
+package de.dataflair.netty5.common.codec;
+
+import de.dataflair.netty5.Netty5ChannelOptions;
+import de.dataflair.netty5.common.packet.Packet;
+import de.dataflair.netty5.common.packet.PacketBundle;
+import io.netty5.channel.Channel;
+import io.netty5.channel.ChannelHandler;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.util.Resource;
+import io.netty5.util.concurrent.Future;
+import io.netty5.util.concurrent.Promise;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+
+/**
+ * Holds outbound messages back while the channel is not writable, so a stalled peer cannot grow the outbound
+ * buffer of Netty without limit.
+ * <p>
+ * Messages pass unchanged as long as the channel is writable and nothing is queued. Otherwise they are queued
+ * in order and written once the channel falls below its low water mark again. A full queue is handled according
+ * to the {@link Netty5ChannelOptions.OutboundPolicy} of the connection.
+ */
+public final class OutboundQueueHandler implements ChannelHandler {
+    private final Netty5ChannelOptions.OutboundPolicy policy;
+    private final int maxQueuedMessages;
+    private final long blockTimeoutMillis;
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+
+    public OutboundQueueHandler(@NotNull Netty5ChannelOptions.OutboundPolicy policy, int maxQueuedMessages, long blockTimeoutMillis) {
+        this.policy = policy;
+        this.maxQueuedMessages = maxQueuedMessages;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+    }
+
+    /**
+     * Returns the outbound policy of the given channel.
+     *
+     * @param channel the channel
+     * @return the policy, or {@link Netty5ChannelOptions.OutboundPolicy#BLOCK} if the channel has no outbound queue
+     */
+    public static @NotNull Netty5ChannelOptions.OutboundPolicy policy(@NotNull Channel channel) {
+        var handler = channel.pipeline().get(OutboundQueueHandler.class);
+        return handler == null ? Netty5ChannelOptions.OutboundPolicy.BLOCK : handler.policy;
+    }
+
+    /**
+     * Returns how long senders wait for the given channel to become writable, see
+     * {@link Netty5ChannelOptions#blockTimeoutMillis()}.
+     *
+     * @param channel the channel
+     * @return the timeout in milliseconds, {@code 0} for no limit
+     */
+    public static long blockTimeoutMillis(@NotNull Channel channel) {
+        var handler = channel.pipeline().get(OutboundQueueHandler.class);
+        return handler == null ? Netty5ChannelOptions.DEFAULT.blockTimeoutMillis() : handler.blockTimeoutMillis;
+    }
+
+    @Override
+    public Future<Void> write(ChannelHandlerContext ctx, Object msg) {
+        if (this.queue.isEmpty() && ctx.channel().isWritable()) {
+            return ctx.write(msg);
+        }
+
+        if (this.queue.size() >= this.maxQueuedMessages) {
+            switch (this.policy) {
+                case DROP_OLDEST -> {
+                    var oldest = this.queue.poll();
+                    discard(oldest.message());
+                    oldest.promise().tryFailure(this.overflow(ctx, "dropped the oldest packet"));
+                }
+                case DISCONNECT -> {
+                    discard(msg);
+                    var cause = this.overflow(ctx, "closing the connection");
+                    ctx.close();
+                    return ctx.newFailedFuture(cause);
+                }
+                default -> {
+                    discard(msg);
+                    return ctx.newFailedFuture(this.overflow(ctx, "dropped the packet"));
+                }
+            }
+        }
+
+        Promise<Void> promise = ctx.newPromise();
+        this.queue.add(new Pending(msg, promise));
+        return promise.asFuture();
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        this.drain(ctx);
+        ctx.flush();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable() && !this.queue.isEmpty()) {
+            this.drain(ctx);
+            ctx.flush();
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        this.failAll();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        this.failAll();
+    }
+
+    private void drain(ChannelHandlerContext ctx) {
+        while (!this.queue.isEmpty() && ctx.channel().isWritable()) {
+            var pending = this.queue.poll();
+            ctx.write(pending.message()).cascadeTo(pending.promise());
+        }
+    }
+
+    private void failAll() {
+        Pending pending;
+        while ((pending = this.queue.poll()) != null) {
+            discard(pending.message());
+            pending.promise().tryFailure(new ClosedChannelException());
+        }
+    }
+
+    private IllegalStateException overflow(ChannelHandlerContext ctx, String action) {
+        var message = "Outbound queue of " + ctx.channel().remoteAddress() + " is full (" + this.maxQueuedMessages + "), " + action;
+        System.err.println(message);
+        return new IllegalStateException(message);
+    }
+
+    private static void discard(Object message) {
+        // packets stay with their sender, which may send the same instance to other connections
+        if (!(message instanceof Packet) && !(message instanceof PacketBundle)) {
+            Resource.dispose(message);
+        }
+    }
+
+    private record Pending(Object message, Promise<Void> promise) {
+    }
+}
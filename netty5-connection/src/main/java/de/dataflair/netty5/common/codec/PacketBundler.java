@@ -0,0 +1,94 @@
+package de.dataflair.netty5.common.codec;
+
+import de.dataflair.netty5.common.packet.Packet;
+import de.dataflair.netty5.common.packet.PacketBundle;
+import io.netty5.channel.ChannelHandler;
+import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.util.concurrent.Future;
+import io.netty5.util.concurrent.Promise;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the packets which are written between two flushes and passes them on as a single {@link PacketBundle}.
+ * <p>
+ * The bundler sits in front of the {@link PacketEncoder}, so every packet of a flush window ends up in one frame.
+ * A bundle is closed early once it holds the configured number of packets, and before any other message, so the
+ * order of the outbound messages is kept. The futures of the bundled packets complete with the bundle, except for
+ * packets which fail to encode, whose futures fail on their own.
+ */
+public final class PacketBundler implements ChannelHandler {
+    private final int maxPackets;
+    private final List<Packet> packets = new ArrayList<>();
+    private final List<Promise<Void>> promises = new ArrayList<>();
+
+    /**
+     * @param maxPackets the maximum number of packets within one bundle
+     */
+    public PacketBundler(int maxPackets) {
+        this.maxPackets = maxPackets;
+    }
+
+    @Override
+    public Future<Void> write(ChannelHandlerContext ctx, Object msg) {
+        if (!(msg instanceof Packet packet)) {
+            this.writePending(ctx);
+            return ctx.write(msg);
+        }
+
+        Promise<Void> promise = ctx.newPromise();
+        this.packets.add(packet);
+        this.promises.add(promise);
+        if (this.packets.size() >= this.maxPackets) {
+            this.writePending(ctx);
+        }
+        return promise.asFuture();
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        this.writePending(ctx);
+        ctx.flush();
+    }
+
+    @Override
+    public Future<Void> close(ChannelHandlerContext ctx) {
+        this.writePending(ctx);
+        return ctx.close();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        this.writePending(ctx);
+    }
+
+    private void writePending(ChannelHandlerContext ctx) {
+        if (this.packets.isEmpty()) {
+            return;
+        }
+        if (this.packets.size() == 1) {
+            ctx.write(this.packets.getFirst()).cascadeTo(this.promises.getFirst());
+        } else {
+            var bundlePromises = List.copyOf(this.promises);
+            ctx.write(new Bundle(List.copyOf(this.packets), bundlePromises)).addListener(future -> {
+                for (var promise : bundlePromises) {
+                    if (future.isSuccess()) {
+                        promise.trySuccess(null);
+                    } else {
+                        promise.tryFailure(future.cause());
+                    }
+                }
+            });
+        }
+        this.packets.clear();
+        this.promises.clear();
+    }
+
+    /**
+     * Packets which the encoder writes as one {@link PacketBundle}, failing the promise of every packet which
+     * cannot be encoded.
+     */
+    record Bundle(List<Packet> packets, List<Promise<Void>> promises) {
+    }
+}
@@ -25,10 +25,13 @@ package de.dataflair.netty5.common.codec;
  */
 
 import de.dataflair.netty5.Netty5ClientChannel;
-import de.dataflair.netty5.common.packet.Packet;
+import de.dataflair.netty5.common.packet.PacketBundle;
+import de.dataflair.netty5.common.packet.PacketFactory;
+import de.dataflair.netty5.common.packet.PacketRegistry;
 import io.netty5.buffer.Buffer;
 import io.netty5.channel.ChannelHandlerContext;
 import io.netty5.handler.codec.ByteToMessageDecoder;
+import io.netty5.handler.codec.DecoderException;
 
 public final class PacketDecoder extends ByteToMessageDecoder {
     private final Netty5ClientChannel.Identity identity;
@@ -39,20 +42,70 @@ public final class PacketDecoder extends ByteToMessageDecoder {
 
     @Override
     protected void decode(ChannelHandlerContext ctx, Buffer in) {
-        var buffer = new CodecBuffer(in);
-        var className = buffer.readString();
+        var header = new CodecBuffer(in).readVarInt();
+        if (header >>> 1 == PacketRegistry.BUNDLE_ID) {
+            this.decodeBundle(ctx, in);
+        } else {
+            this.decodePacket(ctx, header, in);
+        }
+    }
 
+    private void decodeBundle(ChannelHandlerContext ctx, Buffer in) {
+        ctx.fireChannelInboundEvent(PacketBundle.Event.START);
         try {
-            var readableBytes = buffer.readInt();
-            var content = new CodecBuffer(in.copy(in.readerOffset(), readableBytes, true));
-            in.skipReadableBytes(readableBytes);
+            while (in.readableBytes() > 0) {
+                var length = in.readableBytes() >= Integer.BYTES ? in.readInt() : -1;
+                if (length < 0 || length > in.readableBytes()) {
+                    in.skipReadableBytes(in.readableBytes());
+                    throw new DecoderException("Malformed bundle entry of length " + length);
+                }
+
+                // the packets of the entry own splits of it, closing the entry only drops this view
+                try (var entry = in.readSplit(length)) {
+                    this.decodePacket(ctx, new CodecBuffer(entry).readVarInt(), entry);
+                }
+            }
+        } finally {
+            ctx.fireChannelInboundEvent(PacketBundle.Event.END);
+        }
+    }
+
+    private void decodePacket(ChannelHandlerContext ctx, int header, Buffer in) {
+        var packetId = header >>> 1;
+        var buffer = new CodecBuffer(in, (header & 1) == 1 ? CodecBuffer.Protocol.COMPACT : CodecBuffer.Protocol.LEGACY);
+        var className = packetId == PacketRegistry.UNKNOWN_ID ? buffer.readString() : null;
 
-            var packet = (Packet) Class.forName(className).getConstructor(CodecBuffer.class).newInstance(content);
+        CodecBuffer content = null;
+        try {
+            // the content fills the rest of the frame, split it without copying
+            // the packet owns the content until it is dispatched, or until its callbacks are done if they took it over
+            content = new CodecBuffer(in.readSplit(in.readableBytes()), buffer.protocol());
+
+            var packetClass = className != null ? PacketFactory.resolve(className) : this.packetClass(ctx, packetId);
+            var packet = PacketFactory.create(packetClass, content);
             buffer.resetBuffer();
-            ctx.fireChannelRead(packet);
+            try {
+                ctx.fireChannelRead(packet);
+            } finally {
+                if (!packet.ownershipTaken()) {
+                    packet.release();
+                }
+            }
         } catch (Exception e) {
-            System.err.println((identity != null ? "[identity: " + identity.name() + "]" : "") + "Error while decoding packet" + className);
+            if (content != null) {
+                content.close();
+            }
+            System.err.println((identity != null ? "[identity: " + identity.name() + "]" : "") + "Error while decoding packet" + (className != null ? className : "#" + packetId));
             e.printStackTrace();
         }
     }
+
+    private Class<?> packetClass(ChannelHandlerContext ctx, int packetId) {
+        var mapping = PacketRegistry.mapping(ctx.channel());
+        var packetClass = mapping == null ? null : mapping.type(packetId);
+        if (packetClass == null) {
+            throw new IllegalStateException("Unknown packet id " + packetId);
+        }
+        return packetClass;
+    }
 }
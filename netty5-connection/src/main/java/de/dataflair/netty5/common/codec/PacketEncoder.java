@@ -2,13 +2,19 @@ package de.dataflair.netty5.common.codec;
 
 import de.dataflair.netty5.Netty5ClientChannel;
 import de.dataflair.netty5.common.packet.Packet;
+import de.dataflair.netty5.common.packet.PacketBundle;
+import de.dataflair.netty5.common.packet.PacketRegistry;
+import de.dataflair.netty5.common.packet.PacketSizes;
 import io.netty5.buffer.Buffer;
 import io.netty5.channel.ChannelHandlerContext;
+import io.netty5.handler.codec.EncoderException;
 import io.netty5.handler.codec.MessageToByteEncoder;
+import io.netty5.util.concurrent.Promise;
+import org.jetbrains.annotations.Nullable;
 
-import java.nio.charset.StandardCharsets;
+import java.util.List;
 
-public final class PacketEncoder extends MessageToByteEncoder<Packet> {
+public final class PacketEncoder extends MessageToByteEncoder<Object> {
     private final Netty5ClientChannel.Identity identity;
 
     public PacketEncoder(Netty5ClientChannel.Identity identity) {
@@ -16,35 +22,99 @@ public final class PacketEncoder extends MessageToByteEncoder<Packet> {
     }
 
     @Override
-    protected Buffer allocateBuffer(ChannelHandlerContext ctx, Packet msg) {
-        return ctx.bufferAllocator().allocate(this.allocateBytes(msg));
+    public boolean acceptOutboundMessage(Object msg) {
+        return msg instanceof Packet || msg instanceof PacketBundle || msg instanceof PacketBundler.Bundle;
     }
 
-    public int allocateBytes(Packet msg) {
-        return Integer.BYTES +
-                // class name
-                msg.getClass().getName().getBytes(StandardCharsets.UTF_8).length +
-                // amount of bytes in buffer
-                Integer.BYTES +
-                // buffer content
-                msg.buffer().origin().readableBytes();
+    @Override
+    protected Buffer allocateBuffer(ChannelHandlerContext ctx, Object msg) {
+        var packets = msg instanceof PacketBundle bundle ? bundle.packets()
+                : msg instanceof PacketBundler.Bundle bundle ? bundle.packets() : null;
+        if (packets != null) {
+            var bytes = CodecBuffer.varIntSize(PacketRegistry.BUNDLE_ID << 1 | 1);
+            for (var packet : packets) {
+                bytes += Integer.BYTES + this.allocateBytes(this.packetId(ctx, packet), packet);
+            }
+            return ctx.bufferAllocator().allocate(bytes);
+        }
+        return ctx.bufferAllocator().allocate(this.allocateBytes(this.packetId(ctx, (Packet) msg), (Packet) msg));
+    }
+
+    public int allocateBytes(int packetId, Packet msg) {
+        return CodecBuffer.varIntSize(packetId << 1 | 1) +
+                // class name, only if the packet is not part of the id table
+                (packetId == PacketRegistry.UNKNOWN_ID ? Integer.BYTES + CodecBuffer.utf8Length(msg.getClass().getName()) : 0) +
+                // packet content, which fills the rest of the frame
+                msg.estimateSize();
     }
 
     @Override
-    protected void encode(ChannelHandlerContext ctx, Packet msg, Buffer out) {
-        try {
-            var origin = msg.buffer().origin();
-            var buffer = new CodecBuffer(out);
-            var readableBytes = origin.readableBytes();
+    protected void encode(ChannelHandlerContext ctx, Object msg, Buffer out) {
+        if (msg instanceof PacketBundle bundle) {
+            this.encodeBundle(ctx, bundle.packets(), null, out);
+        } else if (msg instanceof PacketBundler.Bundle bundle) {
+            this.encodeBundle(ctx, bundle.packets(), bundle.promises(), out);
+        } else {
+            // a failed packet fails its write, nothing of it reaches the frame
+            this.encodePacket(ctx, (Packet) msg, out);
+        }
+    }
 
-            buffer.writeString(msg.getClass().getName());
-            buffer.writeInt(readableBytes);
+    /**
+     * Encodes the packets into a single frame. Without promises per packet a broken packet fails the whole bundle,
+     * otherwise only its entry is dropped and its promise failed, while the rest of the bundle is still delivered.
+     */
+    private void encodeBundle(ChannelHandlerContext ctx, List<Packet> packets, @Nullable List<Promise<Void>> promises,
+                              Buffer out) {
+        new CodecBuffer(out).writeVarInt(PacketRegistry.BUNDLE_ID << 1 | CodecBuffer.defaultProtocol().ordinal());
+        for (var i = 0; i < packets.size(); i++) {
+            var packet = packets.get(i);
+            // every entry is prefixed with its length, which is known after the packet was written
+            var lengthOffset = out.writerOffset();
+            out.ensureWritable(Integer.BYTES);
+            out.skipWritableBytes(Integer.BYTES);
 
-            origin.copyInto(0, out, out.writerOffset(), readableBytes);
-            out.skipWritableBytes(readableBytes);
+            try {
+                this.encodePacket(ctx, packet, out);
+                out.setInt(lengthOffset, out.writerOffset() - lengthOffset - Integer.BYTES);
+            } catch (EncoderException e) {
+                if (promises == null) {
+                    throw e;
+                }
+                out.writerOffset(lengthOffset);
+                promises.get(i).tryFailure(e);
+            }
+        }
+    }
+
+    /**
+     * Appends the header and content of the packet to the frame. A packet which fails to encode leaves the frame
+     * as it was before.
+     */
+    private void encodePacket(ChannelHandlerContext ctx, Packet msg, Buffer out) {
+        var writerOffset = out.writerOffset();
+        try {
+            // eager packets are already written with the protocol of their buffer
+            var protocol = msg.buffer() != null ? msg.buffer().protocol() : CodecBuffer.defaultProtocol();
+            var buffer = new CodecBuffer(out, protocol);
+            var packetId = this.packetId(ctx, msg);
+
+            // the lowest bit of the header carries the protocol of the frame
+            buffer.writeVarInt(packetId << 1 | protocol.ordinal());
+            if (packetId == PacketRegistry.UNKNOWN_ID) {
+                buffer.writeString(msg.getClass().getName());
+            }
+            var contentOffset = out.writerOffset();
+            msg.write(buffer);
+            PacketSizes.record(msg.getClass(), out.writerOffset() - contentOffset);
         } catch (Exception e) {
-            System.err.println((identity != null ? "[identity: " + identity.name() + "]" : "") + "Error while decoding packet" + msg.getClass().getName());
-            e.printStackTrace();
+            out.writerOffset(writerOffset);
+            throw new EncoderException((identity != null ? "[identity: " + identity.name() + "] " : "") + "Error while encoding packet " + msg.getClass().getName(), e);
         }
     }
+
+    private int packetId(ChannelHandlerContext ctx, Packet msg) {
+        var mapping = PacketRegistry.mapping(ctx.channel());
+        return mapping == null ? PacketRegistry.UNKNOWN_ID : mapping.id(msg.getClass());
+    }
 }
@@ -0,0 +1,106 @@
+package de.dataflair.netty5.common.codec;
+
+import io.netty5.buffer.Buffer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Reader;
+
+/**
+ * Reader which decodes a bounded amount of UTF-8 bytes directly from a {@link Buffer}. Malformed sequences
+ * are decoded as the replacement character {@code U+FFFD}.
+ */
+final class Utf8BufferReader extends Reader {
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private final Buffer buffer;
+    private int remaining;
+    // low surrogate of a pair which did not fit into the previous read call
+    private char pendingLowSurrogate;
+
+    Utf8BufferReader(@NotNull Buffer buffer, int length) {
+        if (length < 0 || length > buffer.readableBytes()) {
+            throw new IndexOutOfBoundsException("Invalid length " + length + ", readable bytes: " + buffer.readableBytes());
+        }
+        this.buffer = buffer;
+        this.remaining = length;
+    }
+
+    /**
+     * Returns the amount of bytes which were not read yet.
+     *
+     * @return the remaining bytes
+     */
+    int remaining() {
+        return this.remaining;
+    }
+
+    @Override
+    public int read(char @NotNull [] chars, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (this.remaining == 0 && this.pendingLowSurrogate == 0) {
+            return -1;
+        }
+
+        var count = 0;
+        if (this.pendingLowSurrogate != 0) {
+            chars[offset + count++] = this.pendingLowSurrogate;
+            this.pendingLowSurrogate = 0;
+        }
+        while (count < length && this.remaining > 0) {
+            var first = this.buffer.readByte();
+            this.remaining--;
+            if (first >= 0) {
+                chars[offset + count++] = (char) first;
+                continue;
+            }
+
+            int codePoint;
+            if ((first & 0xE0) == 0xC0) {
+                codePoint = this.continuation(first & 0x1F, 1, 0x80);
+            } else if ((first & 0xF0) == 0xE0) {
+                codePoint = this.continuation(first & 0x0F, 2, 0x800);
+            } else if ((first & 0xF8) == 0xF0) {
+                codePoint = this.continuation(first & 0x07, 3, 0x10000);
+            } else {
+                codePoint = REPLACEMENT;
+            }
+
+            if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                chars[offset + count++] = Character.highSurrogate(codePoint);
+                if (count < length) {
+                    chars[offset + count++] = Character.lowSurrogate(codePoint);
+                } else {
+                    this.pendingLowSurrogate = Character.lowSurrogate(codePoint);
+                }
+            } else {
+                chars[offset + count++] = (char) codePoint;
+            }
+        }
+        return count;
+    }
+
+    private int continuation(int value, int bytes, int minimum) {
+        for (var i = 0; i < bytes; i++) {
+            if (this.remaining == 0) {
+                return REPLACEMENT;
+            }
+            var next = this.buffer.getByte(this.buffer.readerOffset());
+            if ((next & 0xC0) != 0x80) {
+                // leave the byte for the next character
+                return REPLACEMENT;
+            }
+            this.buffer.skipReadableBytes(1);
+            this.remaining--;
+            value = (value << 6) | (next & 0x3F);
+        }
+        var valid = value >= minimum && value <= Character.MAX_CODE_POINT
+                && (value < Character.MIN_SURROGATE || value > Character.MAX_SURROGATE);
+        return valid ? value : REPLACEMENT;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,94 @@
+package de.dataflair.netty5.common.codec;
+
+import io.netty5.buffer.Buffer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Writer;
+
+/**
+ * Writer which encodes characters as UTF-8 directly into a {@link Buffer}, without an intermediate String
+ * or byte array. Unpaired surrogates are written as {@code '?'}, like {@link CodecBuffer#writeString(String)} does.
+ */
+final class Utf8BufferWriter extends Writer {
+    private final Buffer buffer;
+    // high surrogate of a pair which is split across two write calls
+    private char pendingHighSurrogate;
+
+    Utf8BufferWriter(@NotNull Buffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public void write(int c) {
+        this.writeChar((char) c);
+    }
+
+    @Override
+    public void write(char @NotNull [] chars, int offset, int length) {
+        for (var i = offset; i < offset + length; i++) {
+            this.writeChar(chars[i]);
+        }
+    }
+
+    @Override
+    public void write(@NotNull String value, int offset, int length) {
+        for (var i = offset; i < offset + length; i++) {
+            this.writeChar(value.charAt(i));
+        }
+    }
+
+    @Override
+    public Writer append(CharSequence value) {
+        var sequence = value == null ? "null" : value;
+        for (var i = 0; i < sequence.length(); i++) {
+            this.writeChar(sequence.charAt(i));
+        }
+        return this;
+    }
+
+    private void writeChar(char c) {
+        if (this.pendingHighSurrogate != 0) {
+            var high = this.pendingHighSurrogate;
+            this.pendingHighSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                var codePoint = Character.toCodePoint(high, c);
+                this.buffer.writeByte((byte) (0xF0 | (codePoint >> 18)));
+                this.buffer.writeByte((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                this.buffer.writeByte((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                this.buffer.writeByte((byte) (0x80 | (codePoint & 0x3F)));
+                return;
+            }
+            this.buffer.writeByte((byte) '?');
+        }
+
+        if (c < 0x80) {
+            this.buffer.writeByte((byte) c);
+        } else if (c < 0x800) {
+            this.buffer.writeByte((byte) (0xC0 | (c >> 6)));
+            this.buffer.writeByte((byte) (0x80 | (c & 0x3F)));
+        } else if (Character.isHighSurrogate(c)) {
+            this.pendingHighSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            this.buffer.writeByte((byte) '?');
+        } else {
+            this.buffer.writeByte((byte) (0xE0 | (c >> 12)));
+            this.buffer.writeByte((byte) (0x80 | ((c >> 6) & 0x3F)));
+            this.buffer.writeByte((byte) (0x80 | (c & 0x3F)));
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Writes a trailing unpaired high surrogate. The buffer itself stays open.
+     */
+    @Override
+    public void close() {
+        if (this.pendingHighSurrogate != 0) {
+            this.pendingHighSurrogate = 0;
+            this.buffer.writeByte((byte) '?');
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package de.dataflair.netty5.common.collection;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import de.dataflair.netty5.common.codec.CodecBuffer;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints, which is written and read in bulk without boxing.
+ */
+public final class IntArrayList implements CodecBuffer.WriteReadStream {
+    private static final int[] EMPTY = new int[0];
+
+    private int[] elements;
+    private int size;
+
+    public IntArrayList() {
+        this.elements = EMPTY;
+    }
+
+    public IntArrayList(int capacity) {
+        this.elements = capacity == 0 ? EMPTY : new int[capacity];
+    }
+
+    /**
+     * Creates a list which uses the given array as storage, without copying it.
+     *
+     * @param elements the initial elements
+     * @return the created list
+     */
+    public static @NotNull IntArrayList wrap(int @NotNull [] elements) {
+        var list = new IntArrayList();
+        list.elements = elements;
+        list.size = elements.length;
+        return list;
+    }
+
+    public void add(int value) {
+        this.ensureCapacity(this.size + 1);
+        this.elements[this.size++] = value;
+    }
+
+    public void addAll(int @NotNull [] values) {
+        this.ensureCapacity(this.size + values.length);
+        System.arraycopy(values, 0, this.elements, this.size, values.length);
+        this.size += values.length;
+    }
+
+    public int get(int index) {
+        this.checkIndex(index);
+        return this.elements[index];
+    }
+
+    public int set(int index, int value) {
+        this.checkIndex(index);
+        var previous = this.elements[index];
+        this.elements[index] = value;
+        return previous;
+    }
+
+    public int removeAt(int index) {
+        this.checkIndex(index);
+        var previous = this.elements[index];
+        System.arraycopy(this.elements, index + 1, this.elements, index, this.size - index - 1);
+        this.size--;
+        return previous;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        this.size = 0;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(this.elements, this.size);
+    }
+
+    /**
+     * Grows the storage so that at least the given amount of elements fits without another growth.
+     *
+     * @param capacity the required capacity
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > this.elements.length) {
+            this.elements = Arrays.copyOf(this.elements, Math.max(capacity, Math.max(8, this.elements.length + (this.elements.length >> 1))));
+        }
+    }
+
+    @Override
+    public void writeBuffer(@NotNull CodecBuffer codecBuffer) {
+        codecBuffer.writeLength(this.size);
+        codecBuffer.writeInts(this.elements, 0, this.size);
+    }
+
+    /**
+     * Reads the elements from the buffer and appends them to this list.
+     *
+     * @param codecBuffer The CodecBuffer to read from
+     */
+    @Override
+    public void readBuffer(@NotNull CodecBuffer codecBuffer) {
+        var length = codecBuffer.readArrayLength(Integer.BYTES);
+        this.ensureCapacity(this.size + length);
+        codecBuffer.readInts(this.elements, this.size, length);
+        this.size += length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof IntArrayList other && Arrays.equals(this.elements, 0, this.size, other.elements, 0, other.size);
+    }
+
+    @Override
+    public int hashCode() {
+        var hash = 1;
+        for (var i = 0; i < this.size; i++) {
+            hash = 31 * hash + this.elements[i];
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(this.toArray());
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + this.size);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package de.dataflair.netty5.common.collection;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Hash map from primitive long keys to objects, using open addressing with linear probing.
+ * Keys are never boxed. Null values are not supported. The map is not thread-safe.
+ *
+ * @param <V> the type of the values
+ */
+public final class LongObjectHashMap<V> {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private long[] keys;
+    private V[] values;
+    private int size;
+    private int mask;
+    // the capacity of the expected size, which the map never shrinks below
+    private final int minCapacity;
+
+    public LongObjectHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongObjectHashMap(int expectedSize) {
+        // keep the load factor at or below one half
+        this.minCapacity = Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1) << 1;
+        this.allocate(this.minCapacity);
+    }
+
+    public @Nullable V get(long key) {
+        var index = this.index(key);
+        while (true) {
+            var value = this.values[index];
+            if (value == null || this.keys[index] == key) {
+                return value;
+            }
+            index = (index + 1) & this.mask;
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return this.get(key) != null;
+    }
+
+    /**
+     * Associates the value with the key.
+     *
+     * @param key   the key
+     * @param value the value, must not be null
+     * @return the previous value of the key, or null if there was none
+     */
+    public @Nullable V put(long key, @NotNull V value) {
+        Objects.requireNonNull(value, "value");
+        var index = this.index(key);
+        while (true) {
+            var current = this.values[index];
+            if (current == null) {
+                this.keys[index] = key;
+                this.values[index] = value;
+                if (++this.size > this.values.length >> 1) {
+                    this.rehash(this.values.length << 1);
+                }
+                return null;
+            }
+            if (this.keys[index] == key) {
+                this.values[index] = value;
+                return current;
+            }
+            index = (index + 1) & this.mask;
+        }
+    }
+
+    public @Nullable V remove(long key) {
+        var index = this.index(key);
+        while (true) {
+            var current = this.values[index];
+            if (current == null) {
+                return null;
+            }
+            if (this.keys[index] == key) {
+                this.removeAt(index);
+                return current;
+            }
+            index = (index + 1) & this.mask;
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        if (this.values.length > this.minCapacity) {
+            this.allocate(this.minCapacity);
+        } else {
+            Arrays.fill(this.values, null);
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Calls the consumer for every entry. The map must not be modified during the iteration.
+     *
+     * @param consumer the consumer to call
+     */
+    public void forEach(@NotNull EntryConsumer<? super V> consumer) {
+        for (var i = 0; i < this.values.length; i++) {
+            var value = this.values[i];
+            if (value != null) {
+                consumer.accept(this.keys[i], value);
+            }
+        }
+    }
+
+    private int index(long key) {
+        var hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & this.mask;
+    }
+
+    private void removeAt(int index) {
+        this.values[index] = null;
+        this.size--;
+
+        // shift following entries back, so no lookup chain is interrupted
+        var gap = index;
+        var next = (index + 1) & this.mask;
+        while (this.values[next] != null) {
+            var ideal = this.index(this.keys[next]);
+            if (((next - ideal) & this.mask) >= ((next - gap) & this.mask)) {
+                this.keys[gap] = this.keys[next];
+                this.values[gap] = this.values[next];
+                this.values[next] = null;
+                gap = next;
+            }
+            next = (next + 1) & this.mask;
+        }
+
+        // give the memory of a burst back, the load factor stays at or below one quarter afterwards
+        if (this.size < this.values.length >> 3 && this.values.length > this.minCapacity) {
+            this.rehash(this.values.length >> 1);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.values = (V[]) new Object[capacity];
+        this.mask = capacity - 1;
+    }
+
+    private void rehash(int capacity) {
+        var oldKeys = this.keys;
+        var oldValues = this.values;
+        this.allocate(capacity);
+        for (var i = 0; i < oldValues.length; i++) {
+            var value = oldValues[i];
+            if (value != null) {
+                var index = this.index(oldKeys[i]);
+                while (this.values[index] != null) {
+                    index = (index + 1) & this.mask;
+                }
+                this.keys[index] = oldKeys[i];
+                this.values[index] = value;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+}
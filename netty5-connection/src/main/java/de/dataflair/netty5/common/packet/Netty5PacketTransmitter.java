@@ -19,35 +19,102 @@ package de.dataflair.netty5.common.packet;
  */
 
 import de.dataflair.netty5.Netty5ClientChannel;
-import de.dataflair.netty5.common.codec.CodecBuffer;
+import de.dataflair.netty5.common.collection.LongObjectHashMap;
+import de.dataflair.netty5.common.packet.stream.StreamCreditPacket;
 import io.netty5.channel.EventLoopGroup;
+import io.netty5.util.concurrent.EventExecutor;
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.security.SecureRandom;
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
 @Getter
 public abstract class Netty5PacketTransmitter {
+    /**
+     * Timeout of {@link #queryPacketDirect(RequestPacket, Class)}.
+     */
+    public static final long DEFAULT_DIRECT_TIMEOUT_MILLIS = 2500;
+    /**
+     * Timeout of queries which are sent without an explicit one, unless configured otherwise.
+     */
+    public static final long DEFAULT_QUERY_TIMEOUT_MILLIS = 30_000;
+
     private final EventLoopGroup eventExecutors;
     private final Consumer<Packet> packetConsumer;
+    private final @Nullable Consumer<List<Packet>> bundleConsumer;
     private final Map<Class<? extends Packet>, Map<String, BiConsumer<Netty5ClientChannel, Packet>>> listener = new ConcurrentHashMap<>();
-    private final Map<UUID, Consumer<Packet>> futureRequests = new ConcurrentHashMap<>();
-    private final Map<UUID, Packet> directRequests = new HashMap<>();
+    private final EventExecutor executor;
+    // owned by the event loop, so neither the ids nor the pending queries need synchronization
+    @Getter(AccessLevel.NONE)
+    private final LongObjectHashMap<PendingQuery> pendingQueries = new LongObjectHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final ArrayDeque<PendingQuery> queuedQueries = new ArrayDeque<>();
+    @Getter(AccessLevel.NONE)
+    private long lastQueryId;
+    /**
+     * Limits the queries in flight, has to be set before the first query is sent.
+     */
+    @Setter
+    private volatile @NotNull QueryLimiter queryLimiter = QueryLimiter.unlimited();
     private final Map<Class<? extends RequestPacket>, Map<String, Function<RequestPacket, RespondPacket>>> responders = new ConcurrentHashMap<>();
+    private final Map<Class<? extends RequestPacket>, Function<RequestPacket, Flow.Publisher<? extends RespondPacket>>> streamResponders = new ConcurrentHashMap<>();
+    // streams this connection answers, keyed by the query id of the peer and owned by the event loop
+    @Getter(AccessLevel.NONE)
+    private final LongObjectHashMap<ResponseStream> responseStreams = new LongObjectHashMap<>();
+    private final List<Consumer<Boolean>> writabilityListeners = new CopyOnWriteArrayList<>();
+    private final Queue<CompletableFuture<Void>> writabilityWaiters = new ConcurrentLinkedQueue<>();
+    private volatile boolean writable = true;
+    @Setter
+    private volatile long queryTimeoutMillis = DEFAULT_QUERY_TIMEOUT_MILLIS;
+    /**
+     * Executor of the listener, responder and query callbacks, null runs them on the event loop.
+     */
+    @Setter
+    private volatile @Nullable Executor callbackExecutor;
+    // collects the packets which are published while a bundle is open on the event loop, see beginBundle
+    @Getter(AccessLevel.NONE)
+    private @Nullable List<Packet> openBundle;
+    @Getter(AccessLevel.NONE)
+    private int bundleDepth;
 
     protected Netty5PacketTransmitter(@NotNull EventLoopGroup eventExecutors,
                                       @NotNull Consumer<Packet> packetConsumer) {
+        this(eventExecutors, packetConsumer, null);
+    }
+
+    /**
+     * @param eventExecutors the event loop group of the connection
+     * @param packetConsumer sends a single packet
+     * @param bundleConsumer sends several packets within a single frame, null sends them one by one
+     */
+    protected Netty5PacketTransmitter(@NotNull EventLoopGroup eventExecutors,
+                                      @NotNull Consumer<Packet> packetConsumer,
+                                      @Nullable Consumer<List<Packet>> bundleConsumer) {
         this.eventExecutors = eventExecutors;
+        this.executor = eventExecutors.next();
         this.packetConsumer = packetConsumer;
+        this.bundleConsumer = bundleConsumer;
     }
 
     @SuppressWarnings("unchecked")
@@ -88,77 +155,597 @@ public abstract class Netty5PacketTransmitter {
         this.responders.getOrDefault(packetClass, new ConcurrentHashMap<>()).remove(key);
     }
 
+    /**
+     * Answers queries of the given type with a stream of responses, see {@link #queryStream(RequestPacket, Class)}.
+     * The publisher is asked for no more responses than the querying peer requested, e.g. a
+     * {@link java.util.concurrent.SubmissionPublisher} or a publisher which reads the next page on demand. A failed
+     * publisher fails the stream of the peer, a stream cancelled by the peer cancels the subscription.
+     *
+     * @param queryClass the type of the query
+     * @param responder  creates the publisher of the responses of a query
+     */
+    @SuppressWarnings("unchecked")
+    public <Q extends RequestPacket> void listenQueryStream(@NotNull Class<Q> queryClass,
+                                                          @NotNull Function<Q, Flow.Publisher<? extends RespondPacket>> responder) {
+        this.streamResponders.put(queryClass, (Function<RequestPacket, Flow.Publisher<? extends RespondPacket>>) (Function<?, ?>) responder);
+    }
+
+    public void unregisterStreamResponder(@NotNull Class<? extends RequestPacket> queryClass) {
+        this.streamResponders.remove(queryClass);
+    }
+
     public void publishPacket(@NotNull Packet packet) {
+        var bundle = this.openBundle;
+        if (bundle != null && this.executor.inEventLoop()) {
+            bundle.add(packet);
+            return;
+        }
         packetConsumer.accept(packet);
     }
 
+    /**
+     * Sends the packets within a single frame, if the connection supports bundles.
+     *
+     * @param packets the packets to send
+     */
+    public void publishBundle(@NotNull List<Packet> packets) {
+        if (packets.isEmpty()) {
+            return;
+        }
+        if (this.bundleConsumer != null && packets.size() > 1) {
+            this.bundleConsumer.accept(packets);
+        } else {
+            packets.forEach(this.packetConsumer);
+        }
+    }
+
+    /**
+     * Collects the packets which are published on the event loop from now on, until {@link #endBundle()} sends them
+     * within a single frame. The connection handlers open a bundle while they dispatch a received
+     * {@link PacketBundle}, so the responses to a batch of queries return in one frame as well. Callbacks which
+     * run on the callback executor publish their packets directly, so a slow callback never holds back the others.
+     * Nested bundles join the outer one. Has to be called on the event loop.
+     */
+    public void beginBundle() {
+        if (this.bundleDepth++ == 0) {
+            this.openBundle = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Closes the bundle which was opened with {@link #beginBundle()} and sends its packets. Has to be called on the
+     * event loop.
+     */
+    public void endBundle() {
+        if (this.bundleDepth == 0 || --this.bundleDepth > 0) {
+            return;
+        }
+        var bundle = this.openBundle;
+        this.openBundle = null;
+        this.publishBundle(bundle);
+    }
+
+    /**
+     * Registers a listener which is called with the new state whenever the connection changes its writability.
+     *
+     * @param listener the listener
+     */
+    public void listenWritability(@NotNull Consumer<Boolean> listener) {
+        this.writabilityListeners.add(listener);
+    }
+
+    /**
+     * Returns a future which completes once the connection is writable, immediately if it already is.
+     *
+     * @return the future
+     */
+    public CompletableFuture<Void> awaitWritable() {
+        if (this.writable) {
+            return CompletableFuture.completedFuture(null);
+        }
+        var future = new CompletableFuture<Void>();
+        this.writabilityWaiters.add(future);
+        // the state may have changed while the waiter was added
+        if (this.writable) {
+            this.releaseWaiters();
+        }
+        return future;
+    }
+
+    /**
+     * Called by the connection handlers whenever the writability of the channel changes.
+     *
+     * @param writable whether the channel is writable now
+     */
+    public void writabilityChanged(boolean writable) {
+        this.writable = writable;
+        if (writable) {
+            this.releaseWaiters();
+        }
+        this.writabilityListeners.forEach(listener -> listener.accept(writable));
+    }
+
+    private void releaseWaiters() {
+        CompletableFuture<Void> waiter;
+        while ((waiter = this.writabilityWaiters.poll()) != null) {
+            waiter.complete(null);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public <P extends Packet> void queryPacket(@NotNull RequestPacket requestPacket, Class<P> packet, Consumer<P> callback) {
-        requestPacket.queryId = UUID.randomUUID();
-        requestPacket.buffer.writeUniqueId(requestPacket.queryId);
-        requestPacket.writeBuffer(requestPacket.buffer);
-        try {
-            futureRequests.put(requestPacket.queryId, (Consumer<Packet>) callback);
-        } catch (ClassCastException exception) {
-            CompletableFuture.failedFuture(exception);
+        var future = this.queryPacket(requestPacket, packet);
+        var executor = this.callbackExecutor;
+        if (executor == null) {
+            future.thenAccept((Consumer<Packet>) callback);
+        } else {
+            future.thenAcceptAsync((Consumer<Packet>) callback, executor);
         }
-        this.publishPacket(requestPacket);
     }
 
+    /**
+     * Sends the query and waits for its response, with the {@link #DEFAULT_DIRECT_TIMEOUT_MILLIS default timeout}.
+     *
+     * @param requestPacket the query
+     * @param packetClass   the type of the response
+     * @return the response, or null if none arrived in time
+     */
     public <P extends Packet> P queryPacketDirect(@NotNull RequestPacket requestPacket, Class<P> packetClass) {
-        requestPacket.queryId = UUID.randomUUID();
-        requestPacket.buffer.writeUniqueId(requestPacket.queryId);
-        requestPacket.writeBuffer(requestPacket.buffer);
-        directRequests.put(requestPacket.queryId, new NullSimulationPacket());
-        eventExecutors.execute(() -> packetConsumer.accept(requestPacket));
-
-        var i = 0;
-        while (directRequests.get(requestPacket.queryId).getClass().equals(NullSimulationPacket.class) && i++ < 5000) {
+        try {
+            return this.queryPacketDirect(requestPacket, packetClass, DEFAULT_DIRECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (QueryTimeoutException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Sends the query and waits for its response like {@link #query(RequestPacket, Class, long, TimeUnit)}, but
+     * reports an interruption as timeout. The interrupt flag of the thread is restored.
+     *
+     * @param requestPacket the query
+     * @param packetClass   the type of the response
+     * @param timeout       the maximum time to wait
+     * @param unit          the unit of the timeout
+     * @return the response
+     * @throws QueryTimeoutException  if no response arrived in time, or the waiting thread was interrupted
+     * @throws QueryRejectedException if the {@link #queryLimiter() limiter} rejected the query
+     * @throws QueryFailedException   if the query failed otherwise, e.g. because the connection was closed
+     */
+    public <P extends Packet> P queryPacketDirect(@NotNull RequestPacket requestPacket, Class<P> packetClass,
+                                                  long timeout, @NotNull TimeUnit unit) {
+        try {
+            return this.query(requestPacket, packetClass, timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryTimeoutException(requestPacket, timeout, unit);
+        }
+    }
+
+    /**
+     * Sends the query and waits for its response with the {@link #queryTimeoutMillis() default timeout} of this
+     * transmitter, see {@link #query(RequestPacket, Class, long, TimeUnit)}.
+     *
+     * @param requestPacket the query
+     * @param packetClass   the type of the response
+     * @return the response
+     * @throws InterruptedException   if the waiting thread was interrupted, the query is cancelled then
+     * @throws QueryTimeoutException  if no response arrived in time
+     * @throws QueryRejectedException if the {@link #queryLimiter() limiter} rejected the query
+     * @throws QueryFailedException   if the query failed otherwise, e.g. because the connection was closed
+     */
+    public <P extends Packet> P query(@NotNull RequestPacket requestPacket, Class<P> packetClass) throws InterruptedException {
+        return this.query(requestPacket, packetClass, this.queryTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends the query and parks the calling thread until its response arrives. The thread waits on the future of
+     * the query without holding a monitor, so virtual threads unmount from their carrier while they wait and
+     * blocking queries are as cheap as asynchronous ones. Must not be called on the event loop of this transmitter,
+     * which would have to deliver the response.
+     *
+     * @param requestPacket the query
+     * @param packetClass   the type of the response
+     * @param timeout       the maximum time to wait
+     * @param unit          the unit of the timeout
+     * @return the response
+     * @throws InterruptedException   if the waiting thread was interrupted, the query is cancelled then
+     * @throws QueryTimeoutException  if no response arrived in time
+     * @throws QueryRejectedException if the {@link #queryLimiter() limiter} rejected the query
+     * @throws QueryFailedException   if the query failed otherwise, e.g. because the connection was closed
+     */
+    public <P extends Packet> P query(@NotNull RequestPacket requestPacket, Class<P> packetClass,
+                                      long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        if (this.executor.inEventLoop()) {
+            throw new IllegalStateException("Blocking query on the event loop of the connection");
+        }
+        var future = this.queryPacket(requestPacket, packetClass, timeout, unit);
+        try {
+            // the timer fails the future in time, the timeout of the wait only covers a stalled event loop
+            return packetClass.cast(future.get(unit.toNanos(timeout) + TimeUnit.MILLISECONDS.toNanos(QueryTimer.TICK_MILLIS),
+                    TimeUnit.NANOSECONDS));
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            throw e;
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw new QueryTimeoutException(requestPacket, timeout, unit);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof QueryTimeoutException timeoutException) {
+                throw timeoutException;
+            }
+            if (e.getCause() instanceof QueryRejectedException rejectedException) {
+                throw rejectedException;
+            }
+            throw new QueryFailedException(requestPacket, e.getCause());
+        } catch (ClassCastException e) {
+            throw new QueryFailedException(requestPacket, e);
+        }
+    }
+
+    /**
+     * Sends the query with the {@link #queryTimeoutMillis() default timeout} of this transmitter.
+     *
+     * @param requestPacket the query
+     * @param packet        the type of the response
+     * @return the future of the response
+     */
+    public <P extends Packet> CompletableFuture<Packet> queryPacket(@NotNull RequestPacket requestPacket, Class<P> packet) {
+        return this.queryPacket(requestPacket, packet, this.queryTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends the query. The returned future fails with a {@link QueryTimeoutException} if no response arrives in
+     * time, with a {@link QueryRejectedException} if the {@link #queryLimiter() limiter} has no room for the query,
+     * and with the cause of {@link #failPendingQueries(Throwable)} if the connection is closed before.
+     *
+     * @param requestPacket the query
+     * @param packet        the type of the response
+     * @param timeout       the maximum time to wait
+     * @param unit          the unit of the timeout
+     * @return the future of the response
+     */
+    public <P extends Packet> CompletableFuture<Packet> queryPacket(@NotNull RequestPacket requestPacket, Class<P> packet,
+                                                                    long timeout, @NotNull TimeUnit unit) {
+        var future = new CompletableFuture<Packet>();
+        if (this.executor.inEventLoop()) {
+            this.sendQuery(requestPacket, future, timeout, unit);
+        } else {
+            this.executor.execute(() -> this.sendQuery(requestPacket, future, timeout, unit));
+        }
+        return future;
+    }
+
+    /**
+     * Sends the queries with the {@link #queryTimeoutMillis() default timeout}, see
+     * {@link #queryBatch(List, long, TimeUnit)}.
+     *
+     * @param requestPackets the queries
+     * @return the futures of the responses
+     */
+    public @NotNull QueryBatch queryBatch(@NotNull List<? extends RequestPacket> requestPackets) {
+        return this.queryBatch(requestPackets, this.queryTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends independent queries within a single frame, and registers them in a single task of the event loop. The
+     * peer dispatches the queries in order and returns the responses of its responders in a single frame as well.
+     * Every query is limited and times out on its own, queries the limiter has no slot for are queued or rejected
+     * and sent on their own later.
+     *
+     * @param requestPackets the queries
+     * @param timeout        the maximum time to wait for every response
+     * @param unit           the unit of the timeout
+     * @return the futures of the responses
+     */
+    public @NotNull QueryBatch queryBatch(@NotNull List<? extends RequestPacket> requestPackets, long timeout,
+                                          @NotNull TimeUnit unit) {
+        var requests = List.<RequestPacket>copyOf(requestPackets);
+        var futures = new ArrayList<CompletableFuture<Packet>>(requests.size());
+        for (var ignored : requests) {
+            futures.add(new CompletableFuture<>());
+        }
+        this.runOnLoop(() -> {
+            this.beginBundle();
             try {
-                Thread.sleep(0, 500000);
-            } catch (InterruptedException ignored) {
+                for (var i = 0; i < requests.size(); i++) {
+                    this.sendQuery(requests.get(i), futures.get(i), timeout, unit);
+                }
+            } finally {
+                this.endBundle();
             }
+        });
+        return new QueryBatch(futures);
+    }
+
+    /**
+     * Sends the query and streams its responses, so large or paginated results are processed as they arrive
+     * instead of in a single response. The peer answers with a responder of
+     * {@link #listenQueryStream(Class, Function)}.
+     * <p>
+     * The query is sent once the publisher is subscribed, and the responder sends no more responses than the
+     * subscriber requested. The stream completes with the end marker of the responder, and fails with a
+     * {@link QueryTimeoutException} if no response arrives within the {@link #queryTimeoutMillis() timeout} while
+     * responses are requested, and like other queries if the limiter rejects it or the connection is closed.
+     * Signals are delivered on the {@link #callbackExecutor() callback executor}, one at a time. The publisher can
+     * be subscribed once.
+     *
+     * @param requestPacket the query
+     * @param packetClass   the type of the responses
+     * @return the publisher of the responses
+     */
+    public <P extends RespondPacket> Flow.Publisher<P> queryStream(@NotNull RequestPacket requestPacket,
+                                                                  @NotNull Class<P> packetClass) {
+        return new QueryStream<>(this, requestPacket, packetClass, this.queryTimeoutMillis);
+    }
+
+    /**
+     * Fails all pending and queued queries and cancels the streams this connection answers, called once the
+     * connection was closed.
+     *
+     * @param cause the cause to fail the queries with
+     */
+    public void failPendingQueries(@NotNull Throwable cause) {
+        if (!this.executor.inEventLoop()) {
+            this.executor.execute(() -> this.failPendingQueries(cause));
+            return;
+        }
+        // completing the futures removes them from the map and the queue, so they are collected first
+        var pending = new ArrayList<PendingQuery>(this.pendingQueries.size() + this.queuedQueries.size());
+        this.pendingQueries.forEach((_, query) -> pending.add(query));
+        this.pendingQueries.clear();
+        pending.addAll(this.queuedQueries);
+        this.queuedQueries.clear();
+        this.queryLimiter.queued(0);
+        pending.forEach(query -> query.future.completeExceptionally(cause));
+
+        var streams = new ArrayList<ResponseStream>(this.responseStreams.size());
+        this.responseStreams.forEach((_, stream) -> streams.add(stream));
+        streams.forEach(stream -> stream.credit(StreamCreditPacket.CANCEL));
+    }
+
+    /**
+     * Completes the pending query the response belongs to. Has to be called on the event loop of this transmitter.
+     *
+     * @param respondPacket the received response
+     * @return true if a query was waiting for the response
+     */
+    public boolean completeQuery(@NotNull RespondPacket respondPacket) {
+        var query = this.pendingQueries.get(respondPacket.queryId());
+        if (query == null) {
+            return false;
+        }
+        if (query.stream != null) {
+            query.stream.received(respondPacket);
+            return true;
         }
+        return query.future.complete(respondPacket);
+    }
 
-        var result = directRequests.get(requestPacket.queryId);
-        directRequests.remove(requestPacket.queryId);
-        if (result.getClass().equals(NullSimulationPacket.class))
+    /**
+     * Registers the stream which answers the query, if there is a stream responder for its type. Has to be called
+     * on the event loop of the connection as soon as the query is received, so no credit of the peer is missed.
+     *
+     * @param request    the received query
+     * @param connection the transmitter of the connection which received the query
+     * @return the task which creates the publisher and subscribes to it, or null without a stream responder
+     */
+    public @Nullable Runnable openResponseStream(@NotNull RequestPacket request, @NotNull Netty5PacketTransmitter connection) {
+        var responder = this.streamResponders.get(request.getClass());
+        if (responder == null) {
             return null;
-        return (P) result;
+        }
+        var stream = new ResponseStream(connection, request.queryId());
+        connection.responseStreams.put(request.queryId(), stream);
+        return () -> {
+            try {
+                responder.apply(request).subscribe(stream);
+            } catch (RuntimeException e) {
+                stream.onError(e);
+            }
+        };
     }
 
-    @SuppressWarnings("unchecked")
-    public <P extends Packet> CompletableFuture<Packet> queryPacket(@NotNull RequestPacket requestPacket, Class<P> packet) {
-        var future = new CompletableFuture<P>();
-        this.queryPacket(requestPacket, packet, future::complete);
-        try {
-            return (CompletableFuture<Packet>) future;
-        } catch (ClassCastException exception) {
-            return CompletableFuture.failedFuture(exception);
+    /**
+     * Passes the credits of the peer to the stream they belong to. Has to be called on the event loop.
+     *
+     * @param creditPacket the received credits
+     */
+    public void creditResponseStream(@NotNull StreamCreditPacket creditPacket) {
+        var stream = this.responseStreams.get(creditPacket.queryId());
+        if (stream != null) {
+            stream.credit(creditPacket.credits());
         }
     }
 
+    void closeResponseStream(long queryId) {
+        this.responseStreams.remove(queryId);
+    }
+
+    void runOnLoop(@NotNull Runnable task) {
+        if (this.executor.inEventLoop()) {
+            task.run();
+        } else {
+            this.executor.execute(task);
+        }
+    }
+
+    /**
+     * Sends a streamed query on the event loop. Streams are not queued by the limiter, they are rejected right away
+     * if it has no free slot.
+     */
+    void openStream(@NotNull QueryStream<?> stream) {
+        var future = stream.future();
+        if (future.isDone()) {
+            // cancelled before it was sent
+            return;
+        }
+        var query = new PendingQuery(stream.requestPacket(), future, stream);
+        future.whenComplete((_, cause) -> this.runOnLoop(() -> {
+            stream.closed(cause);
+            this.queryCompleted(query, cause);
+        }));
+
+        var limiter = this.queryLimiter;
+        if (!limiter.tryAcquire()) {
+            limiter.onRejected();
+            future.completeExceptionally(new QueryRejectedException(stream.requestPacket(), limiter.limit()));
+            return;
+        }
+        this.publishQuery(query);
+        stream.sent(query.queryId);
+    }
+
+    /**
+     * Registers a query on the event loop, which owns the query ids and the pending queries. The query is sent
+     * right away if the limiter has a free slot, and queued or rejected otherwise. Its timeout covers the time
+     * in the queue as well.
+     */
+    private void sendQuery(RequestPacket requestPacket, CompletableFuture<Packet> future, long timeout, TimeUnit unit) {
+        if (future.isDone()) {
+            // cancelled before it was sent
+            return;
+        }
+        var query = new PendingQuery(requestPacket, future, null);
+        var expiry = QueryTimer.of(this.executor).schedule(
+                () -> future.completeExceptionally(new QueryTimeoutException(requestPacket, timeout, unit)), timeout, unit);
+        // answered, failed and cancelled queries neither wait for their timeout nor stay pending
+        future.whenComplete((_, cause) -> {
+            expiry.cancel();
+            if (this.executor.inEventLoop()) {
+                this.queryCompleted(query, cause);
+            } else {
+                this.executor.execute(() -> this.queryCompleted(query, cause));
+            }
+        });
+
+        var limiter = this.queryLimiter;
+        if (this.queuedQueries.isEmpty() && limiter.tryAcquire()) {
+            this.publishQuery(query);
+        } else if (this.queuedQueries.size() < limiter.maxQueued()) {
+            this.queuedQueries.add(query);
+            limiter.queued(this.queuedQueries.size());
+        } else {
+            limiter.onRejected();
+            future.completeExceptionally(new QueryRejectedException(requestPacket, limiter.limit()));
+        }
+    }
+
+    private void publishQuery(PendingQuery query) {
+        var queryId = ++this.lastQueryId;
+        query.request.queryId = queryId;
+        query.queryId = queryId;
+        query.sentNanos = System.nanoTime();
+        this.pendingQueries.put(queryId, query);
+        this.publishPacket(query.request);
+    }
+
+    private void queryCompleted(PendingQuery query, @Nullable Throwable cause) {
+        if (query.queryId == 0) {
+            // never sent, timed out or cancelled in the queue, which frees its place right away
+            if (this.queuedQueries.remove(query)) {
+                this.queryLimiter.queued(this.queuedQueries.size());
+            }
+            return;
+        }
+        this.pendingQueries.remove(query.queryId);
+
+        var limiter = this.queryLimiter;
+        if (cause == null && query.stream == null) {
+            limiter.onSuccess(System.nanoTime() - query.sentNanos);
+        } else if (cause instanceof QueryTimeoutException) {
+            limiter.onDropped();
+        } else {
+            // the latency of a whole stream says nothing about the load of the peer
+            limiter.onIgnored();
+        }
+
+        PendingQuery next;
+        while ((next = this.queuedQueries.peek()) != null && (next.future.isDone() || limiter.tryAcquire())) {
+            this.queuedQueries.poll();
+            if (!next.future.isDone()) {
+                this.publishQuery(next);
+            }
+        }
+        limiter.queued(this.queuedQueries.size());
+    }
+
     public abstract void callActions(@NotNull Packet packet, Netty5ClientChannel sender);
 
     public void call(@NotNull Packet packet, @Nullable Netty5ClientChannel sender) {
+        if (packet instanceof StreamCreditPacket creditPacket) {
+            this.creditResponseStream(creditPacket);
+            return;
+        }
+
         if (packet instanceof RespondPacket respondPacket) {
-            if (directRequests().containsKey(respondPacket.queryId())) {
-                directRequests().put(respondPacket.queryId(), packet);
+            this.completeQuery(respondPacket);
+        }
+
+        var stream = packet instanceof RequestPacket requestPacket ? this.openResponseStream(requestPacket, this) : null;
+        this.dispatch(this.callbackExecutor, packet, () -> {
+            if (stream != null) {
+                stream.run();
+            } else if (packet instanceof RequestPacket requestPacket) {
+                this.callResponder(requestPacket);
             }
-            if (futureRequests().containsKey(respondPacket.queryId())) {
-                futureRequests().get(respondPacket.queryId()).accept(packet);
-                futureRequests().remove(respondPacket.queryId());
+
+            this.callActions(packet, sender);
+
+            if (listener().containsKey(packet.getClass())) {
+                listener().get(packet.getClass()).forEach((_, packetConsumer) -> packetConsumer.accept(sender, packet));
             }
-        }
+        });
+    }
 
-        if (packet instanceof RequestPacket requestPacket) {
-            this.callResponder(requestPacket);
+    /**
+     * Runs the callbacks of the given received packet like {@link #dispatch(Executor, Runnable)}. On an executor
+     * the callbacks own the packet and release it once they are done, otherwise the decoder releases it after the
+     * dispatch.
+     *
+     * @param executor  the callback executor, null for the calling thread
+     * @param packet    the received packet
+     * @param callbacks the callbacks of the packet
+     */
+    protected void dispatch(@Nullable Executor executor, @NotNull Packet packet, @NotNull Runnable callbacks) {
+        if (executor == null) {
+            callbacks.run();
+            return;
         }
+        packet.takeOwnership();
+        // a rejected task runs right away, which releases the packet as well
+        this.dispatch(executor, () -> {
+            try {
+                callbacks.run();
+            } finally {
+                packet.release();
+            }
+        });
+    }
 
-        this.callActions(packet, sender);
-
-        if (listener().containsKey(packet.getClass())) {
-            listener().get(packet.getClass()).forEach((_, packetConsumer) -> packetConsumer.accept(sender, packet));
+    /**
+     * Runs the callbacks of a received packet on the given executor, or directly if there is none. Responses are
+     * completed before on the event loop, so a blocked callback never holds back the responses it waits for.
+     *
+     * @param executor  the callback executor, null for the calling thread
+     * @param callbacks the callbacks of the packet
+     */
+    protected void dispatch(@Nullable Executor executor, @NotNull Runnable callbacks) {
+        if (executor == null) {
+            callbacks.run();
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    callbacks.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Error while handling packet callbacks");
+                    e.printStackTrace();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // the executor was shut down, handle the packet anyway
+            callbacks.run();
         }
     }
 
@@ -175,30 +762,23 @@ public abstract class Netty5PacketTransmitter {
             responders.get(request.getClass()).forEach((_, packetRespondPacketFunction) -> {
                 var respondPacket = packetRespondPacketFunction.apply(request);
                 respondPacket.queryId(request.queryId);
-                respondPacket.buffer.writeUniqueId(request.queryId);
-                respondPacket.writeBuffer(respondPacket.buffer);
                 publishPacket(respondPacket);
             });
         }
     }
 
-    public static class NullSimulationPacket extends RespondPacket {
-
-        public NullSimulationPacket() {
-        }
-
-        public NullSimulationPacket(@NotNull CodecBuffer buffer) {
-            super(buffer);
-        }
-
-        @Override
-        public void writeBuffer(@NotNull CodecBuffer codecBuffer) {
-
-        }
-
-        @Override
-        public void readBuffer(@NotNull CodecBuffer codecBuffer) {
-
+    private static final class PendingQuery {
+        private final RequestPacket request;
+        private final CompletableFuture<Packet> future;
+        private final @Nullable QueryStream<?> stream;
+        // assigned once the query is sent
+        private long queryId;
+        private long sentNanos;
+
+        private PendingQuery(RequestPacket request, CompletableFuture<Packet> future, @Nullable QueryStream<?> stream) {
+            this.request = request;
+            this.future = future;
+            this.stream = stream;
         }
     }
 }
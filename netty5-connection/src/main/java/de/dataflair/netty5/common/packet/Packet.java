@@ -1,20 +1,101 @@
 package de.dataflair.netty5.common.packet;
 
 import de.dataflair.netty5.common.codec.CodecBuffer;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.jetbrains.annotations.NotNull;
 
+/**
+ * Base class of all transmitted packets.
+ * <p>
+ * Packets which implement {@link CodecBuffer.WriteReadStream} are serialized lazily: they do not allocate a
+ * buffer of their own, but are written straight into the outbound buffer while they are encoded. All other
+ * packets write their content into {@link #buffer()} within their constructor.
+ */
 @Getter
 @Setter
 public abstract class Packet {
+    /**
+     * Estimated content size of packet types which were not encoded yet, used to size buffers.
+     */
+    protected static final int DEFAULT_ESTIMATED_SIZE = 64;
+
+    // null for lazily serialized packets which have not been received
     protected CodecBuffer buffer;
+    // set once a callback executor took over the release from the decoder, see takeOwnership
+    @Setter(AccessLevel.NONE)
+    private boolean ownershipTaken;
 
     public Packet() {
-        this.buffer = CodecBuffer.allocate();
+        this.buffer = this instanceof CodecBuffer.WriteReadStream ? null : CodecBuffer.allocate(PacketSizes.estimate(getClass()));
     }
 
     public Packet(@NotNull CodecBuffer buffer) {
         this.buffer = buffer;
     }
+
+    /**
+     * Writes the content of this packet into the outbound buffer.
+     *
+     * @param target the outbound buffer
+     */
+    public void write(@NotNull CodecBuffer target) {
+        if (this.buffer == null) {
+            ((CodecBuffer.WriteReadStream) this).writeBuffer(target);
+            return;
+        }
+
+        var origin = this.buffer.origin();
+        var readableBytes = origin.readableBytes();
+        target.origin().ensureWritable(readableBytes);
+        origin.copyInto(origin.readerOffset(), target.origin(), target.origin().writerOffset(), readableBytes);
+        target.origin().skipWritableBytes(readableBytes);
+    }
+
+    /**
+     * Estimates the amount of bytes {@link #write(CodecBuffer)} produces. Lazily serialized packets which know
+     * their exact size implement {@link CodecBuffer.WriteReadStream#encodedSize(CodecBuffer.Protocol)}, so the
+     * outbound buffer is allocated once without growing.
+     *
+     * @return the estimated content size in bytes
+     */
+    public int estimateSize() {
+        if (this.buffer != null) {
+            return this.buffer.origin().readableBytes();
+        }
+        var size = ((CodecBuffer.WriteReadStream) this).encodedSize(CodecBuffer.defaultProtocol());
+        return size < 0 ? PacketSizes.estimate(getClass()) : size;
+    }
+
+    /**
+     * Releases the buffer of this packet. The encoder copies the content of sent packets without consuming it,
+     * so an instance can be sent any number of times, e.g. to every connection of a broadcast. Received packets
+     * are released by the decoder as soon as they are dispatched, unless their callbacks took them over, so packets
+     * which are kept beyond their callbacks, e.g. as the result of a query, have to read their content within the
+     * constructor.
+     */
+    public void release() {
+        if (this.buffer != null) {
+            this.buffer.close();
+        }
+    }
+
+    /**
+     * Takes the release of this received packet over from the decoder, e.g. to run its callbacks on another
+     * thread. The caller has to {@link #release()} the packet once it is done. Has to be called on the event loop
+     * while the packet is dispatched.
+     */
+    public void takeOwnership() {
+        this.ownershipTaken = true;
+    }
+
+    /**
+     * Returns whether the release of this packet was taken over, see {@link #takeOwnership()}.
+     *
+     * @return whether the decoder must not release the packet
+     */
+    public boolean ownershipTaken() {
+        return this.ownershipTaken;
+    }
 }
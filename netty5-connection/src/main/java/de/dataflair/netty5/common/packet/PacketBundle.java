@@ -0,0 +1,46 @@
+package de.dataflair.netty5.common.packet;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Packets which are encoded into a single frame behind {@link PacketRegistry#BUNDLE_ID}.
+ * <p>
+ * Every packet keeps its own header within the frame, the receiver unpacks the bundle and dispatches the
+ * packets one by one in their original order. The packets are copied into the frame and stay reusable.
+ *
+ * @param packets the bundled packets
+ */
+public record PacketBundle(@NotNull List<Packet> packets) {
+    public PacketBundle {
+        packets = List.copyOf(packets);
+    }
+
+    /**
+     * Inbound events which the decoder fires around the packets of a received bundle, so the packets which are
+     * sent in response can be bundled as well, see {@link Netty5PacketTransmitter#beginBundle()}.
+     */
+    public enum Event {
+        START,
+        END
+    }
+}
@@ -0,0 +1,144 @@
+package de.dataflair.netty5.common.packet;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import de.dataflair.netty5.common.codec.CodecBuffer;
+import lombok.experimental.UtilityClass;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Creates packets from their {@code (CodecBuffer)} constructor without reflection on the decode path.
+ * <p>
+ * The factory of a packet type is generated once with the {@link LambdaMetafactory} and cached in a
+ * {@link ClassValue}. Types which cannot be instantiated get a factory which fails immediately, and
+ * class names which cannot be resolved are remembered, so a misbehaving peer cannot trigger the
+ * lookup again and again.
+ */
+@UtilityClass
+public class PacketFactory {
+    /**
+     * Upper bound of remembered unknown class names, so random names cannot grow the cache without limit.
+     */
+    private final int MAX_UNKNOWN_NAMES = 1024;
+
+    private final ClassValue<Function<CodecBuffer, Packet>> FACTORIES = new ClassValue<>() {
+        @Override
+        protected Function<CodecBuffer, Packet> computeValue(Class<?> type) {
+            return createFactory(type);
+        }
+    };
+    private final Map<String, Class<?>> knownNames = new ConcurrentHashMap<>();
+    private final Set<String> unknownNames = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a packet of the given type from the buffer.
+     *
+     * @param type   the packet type
+     * @param buffer the buffer which holds the packet content
+     * @return the created packet
+     * @throws IllegalArgumentException if the type is no packet or has no {@code (CodecBuffer)} constructor
+     */
+    public static @NotNull Packet create(@NotNull Class<?> type, @NotNull CodecBuffer buffer) {
+        return FACTORIES.get(type).apply(buffer);
+    }
+
+    /**
+     * Resolves a packet type by its class name. Both found and missing names are cached.
+     *
+     * @param className the class name read from the frame header
+     * @return the resolved type
+     * @throws ClassNotFoundException if no class with the given name exists
+     */
+    public static @NotNull Class<?> resolve(@NotNull String className) throws ClassNotFoundException {
+        var type = knownNames.get(className);
+        if (type != null) {
+            return type;
+        }
+        if (unknownNames.contains(className)) {
+            throw new ClassNotFoundException(className);
+        }
+
+        try {
+            type = Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            if (unknownNames.size() < MAX_UNKNOWN_NAMES) {
+                unknownNames.add(className);
+            }
+            throw e;
+        }
+        knownNames.put(className, type);
+        return type;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<CodecBuffer, Packet> createFactory(Class<?> type) {
+        if (!Packet.class.isAssignableFrom(type) || Modifier.isAbstract(type.getModifiers())) {
+            return failingFactory(type, "is not an instantiable packet");
+        }
+
+        MethodHandle constructor;
+        MethodHandles.Lookup lookup;
+        try {
+            lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            constructor = lookup.findConstructor(type, MethodType.methodType(void.class, CodecBuffer.class));
+        } catch (ReflectiveOperationException | IllegalAccessError e) {
+            return failingFactory(type, "has no accessible (CodecBuffer) constructor");
+        }
+
+        try {
+            var callSite = LambdaMetafactory.metafactory(lookup,
+                    "apply",
+                    MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    constructor,
+                    MethodType.methodType(type, CodecBuffer.class));
+            return (Function<CodecBuffer, Packet>) callSite.getTarget().invoke();
+        } catch (Throwable ignored) {
+            // e.g. hidden classes, fall back to the plain method handle
+        }
+
+        var handle = constructor.asType(MethodType.methodType(Packet.class, CodecBuffer.class));
+        return buffer -> {
+            try {
+                return (Packet) handle.invokeExact(buffer);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    private static Function<CodecBuffer, Packet> failingFactory(Class<?> type, String reason) {
+        var message = type.getName() + " " + reason;
+        return _ -> {
+            throw new IllegalArgumentException(message);
+        };
+    }
+}
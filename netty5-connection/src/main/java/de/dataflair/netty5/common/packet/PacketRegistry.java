@@ -0,0 +1,171 @@
+package de.dataflair.netty5.common.packet;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import de.dataflair.netty5.common.packet.stream.StreamCreditPacket;
+import de.dataflair.netty5.common.packet.stream.StreamEndPacket;
+import io.netty5.channel.Channel;
+import io.netty5.util.AttributeKey;
+import lombok.experimental.UtilityClass;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of packet types which are transmitted with a compact numeric id instead of their class name.
+ * <p>
+ * The client announces the names of all registered packet types within its
+ * {@link de.dataflair.netty5.common.packet.auth.AuthPacket}. Both peers use the announced order as id table
+ * of the connection, starting with id {@link #FIRST_ID}. Packets which are not part of the table are still
+ * transmitted with their class name behind the reserved id {@link #UNKNOWN_ID}.
+ */
+@UtilityClass
+public class PacketRegistry {
+    /**
+     * Id which marks that the class name of the packet follows in the frame header.
+     */
+    public final int UNKNOWN_ID = 0;
+    /**
+     * Id of frames which carry a {@link PacketBundle} instead of a single packet.
+     */
+    public final int BUNDLE_ID = 1;
+    /**
+     * Id of frames which carry a chunk of an oversized frame, see {@link de.dataflair.netty5.common.codec.FrameChunkHandler}.
+     */
+    public final int CHUNK_ID = 2;
+    /**
+     * Id of the first announced packet type.
+     */
+    public final int FIRST_ID = 3;
+
+    private final AttributeKey<Mapping> MAPPING = AttributeKey.valueOf(PacketRegistry.class, "mapping");
+    // the stream packets are registered up front, credits are sent for every demand of a stream subscriber
+    private final CopyOnWriteArrayList<Class<? extends Packet>> packetTypes = new CopyOnWriteArrayList<>(
+            List.of(StreamCreditPacket.class, StreamEndPacket.class));
+
+    /**
+     * Registers packet types for id based transmission. Types which are already registered are ignored.
+     *
+     * @param types the packet types to register
+     */
+    @SafeVarargs
+    public static void register(@NotNull Class<? extends Packet>... types) {
+        for (var type : types) {
+            packetTypes.addIfAbsent(type);
+        }
+    }
+
+    /**
+     * Returns the class names of all registered packet types in registration order.
+     *
+     * @return the registered class names
+     */
+    public static @NotNull List<String> packetTypeNames() {
+        var names = new ArrayList<String>(packetTypes.size());
+        for (var type : packetTypes) {
+            names.add(type.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Returns the id table which was agreed for the given channel.
+     *
+     * @param channel the channel to look up
+     * @return the mapping of the channel, or null if no table was agreed yet
+     */
+    public static @Nullable Mapping mapping(@NotNull Channel channel) {
+        return channel.attr(MAPPING).get();
+    }
+
+    /**
+     * Binds an id table to the given channel. All following frames of the channel are encoded and decoded with it.
+     *
+     * @param channel the channel to bind the table to
+     * @param mapping the agreed id table
+     */
+    public static void bind(@NotNull Channel channel, @NotNull Mapping mapping) {
+        channel.attr(MAPPING).set(mapping);
+    }
+
+    /**
+     * Id table of a single connection.
+     */
+    public static final class Mapping {
+        private final Class<?>[] types;
+        private final Map<Class<?>, Integer> ids = new IdentityHashMap<>();
+
+        private Mapping(@NotNull List<String> typeNames) {
+            this.types = new Class<?>[typeNames.size() + FIRST_ID];
+            for (var i = 0; i < typeNames.size(); i++) {
+                var type = resolve(typeNames.get(i));
+                if (type != null) {
+                    this.types[i + FIRST_ID] = type;
+                    this.ids.put(type, i + FIRST_ID);
+                }
+            }
+        }
+
+        /**
+         * Creates the id table for the given class names, as announced during the handshake.
+         * Class names which cannot be resolved locally keep their id but are never used.
+         *
+         * @param typeNames the announced class names
+         * @return the created table
+         */
+        public static @NotNull Mapping of(@NotNull List<String> typeNames) {
+            return new Mapping(typeNames);
+        }
+
+        /**
+         * Returns the id of the given packet type.
+         *
+         * @param type the packet type
+         * @return the id, or {@link PacketRegistry#UNKNOWN_ID} if the type is not part of the table
+         */
+        public int id(@NotNull Class<?> type) {
+            var id = this.ids.get(type);
+            return id == null ? UNKNOWN_ID : id;
+        }
+
+        /**
+         * Returns the packet type of the given id.
+         *
+         * @param id the id read from the frame header
+         * @return the packet type, or null if the id is unknown
+         */
+        public @Nullable Class<?> type(int id) {
+            return id >= FIRST_ID && id < this.types.length ? this.types[id] : null;
+        }
+
+        private static @Nullable Class<?> resolve(@NotNull String name) {
+            try {
+                var type = Class.forName(name, false, PacketRegistry.class.getClassLoader());
+                return Packet.class.isAssignableFrom(type) ? type : null;
+            } catch (ClassNotFoundException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package de.dataflair.netty5.common.packet;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import lombok.experimental.UtilityClass;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Tracks the encoded content size per packet type, so buffers can be allocated with a fitting size.
+ * <p>
+ * The estimate follows larger sizes immediately and decays by an eighth per smaller observation, so a
+ * single large packet does not inflate all following allocations for long.
+ */
+@UtilityClass
+public class PacketSizes {
+    private final ClassValue<Estimate> ESTIMATES = new ClassValue<>() {
+        @Override
+        protected Estimate computeValue(Class<?> type) {
+            return new Estimate();
+        }
+    };
+
+    /**
+     * Returns the expected content size of the given packet type.
+     *
+     * @param type the packet type
+     * @return the expected size in bytes
+     */
+    public static int estimate(@NotNull Class<?> type) {
+        return ESTIMATES.get(type).value;
+    }
+
+    /**
+     * Records the content size of an encoded packet.
+     *
+     * @param type the packet type
+     * @param size the encoded size in bytes
+     */
+    public static void record(@NotNull Class<?> type, int size) {
+        var estimate = ESTIMATES.get(type);
+        var current = estimate.value;
+        // races only lose single observations, which is fine for an estimate
+        estimate.value = Math.max(size, current - (current >> 3));
+    }
+
+    private static final class Estimate {
+        private volatile int value = Packet.DEFAULT_ESTIMATED_SIZE;
+    }
+}
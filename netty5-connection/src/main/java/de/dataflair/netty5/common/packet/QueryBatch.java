@@ -0,0 +1,44 @@
+package de.dataflair.netty5.common.packet;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The responses of a batch of queries, see {@link Netty5PacketTransmitter#queryBatch(List)}.
+ *
+ * @param responses the futures of the responses, in the order of the queries
+ * @param all       completes with all responses in the order of the queries once every query completed, fails if
+ *                  any of them failed
+ */
+public record QueryBatch(@NotNull List<CompletableFuture<Packet>> responses,
+                         @NotNull CompletableFuture<List<Packet>> all) {
+    public QueryBatch(@NotNull List<CompletableFuture<Packet>> responses) {
+        this(List.copyOf(responses), CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new))
+                .thenApply(_ -> {
+                    var packets = new ArrayList<Packet>(responses.size());
+                    responses.forEach(response -> packets.add(response.join()));
+                    return packets;
+                }));
+    }
+}
@@ -0,0 +1,39 @@
+package de.dataflair.netty5.common.packet;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serial;
+
+/**
+ * Thrown if a query failed without a response, e.g. because the connection was closed while it was pending.
+ */
+@Getter
+public final class QueryFailedException extends IllegalStateException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final transient RequestPacket request;
+
+    public QueryFailedException(@NotNull RequestPacket request, @NotNull Throwable cause) {
+        super("Query " + request.getClass().getName() + " failed", cause);
+        this.request = request;
+    }
+}
@@ -0,0 +1,141 @@
+package de.dataflair.netty5.common.packet;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Limits the queries a connection has in flight, those which were sent and not yet answered.
+ * <p>
+ * With a fixed limit the window never changes. The adaptive limit follows TCP Vegas instead: the lowest observed
+ * round trip time is taken as the time of an unloaded peer, and the share of a response's round trip time above
+ * it estimates how many queries wait in queues on the way. Few waiting queries raise the limit, many lower it,
+ * and every timeout lowers it as well. The limit therefore settles where the peer answers without building up
+ * latency, and excess queries fail fast with a {@link QueryRejectedException} or wait in the local queue.
+ * <p>
+ * The limiter is updated by the event loop of its connection only, the state can be read from any thread for
+ * monitoring.
+ */
+@Getter
+public final class QueryLimiter {
+    /**
+     * Limit of an adaptive limiter before it has seen any response.
+     */
+    public static final int INITIAL_LIMIT = 20;
+    /**
+     * Upper bound of an adaptive limiter without a configured maximum.
+     */
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+    private static final int MIN_LIMIT = 1;
+    // the lowest round trip time is measured again after this many samples per query of the limit
+    private static final int PROBE_SAMPLES_PER_LIMIT = 30;
+
+    private final boolean adaptive;
+    private final int maxLimit;
+    private final int maxQueued;
+    private volatile int limit;
+    private volatile int inFlight;
+    private volatile int queued;
+    private volatile long rejected;
+    private volatile long minRttNanos = Long.MAX_VALUE;
+    private volatile long rttNanos;
+    @Getter(AccessLevel.NONE)
+    private int samples;
+
+    /**
+     * @param maxLimit  the maximum number of queries in flight, {@code 0} for no limit
+     * @param adaptive  whether the limit adapts to the observed latency, up to the maximum
+     * @param maxQueued the number of queries which wait for a free slot instead of being rejected
+     */
+    public QueryLimiter(int maxLimit, boolean adaptive, int maxQueued) {
+        this.adaptive = adaptive;
+        this.maxLimit = maxLimit > 0 ? maxLimit : adaptive ? DEFAULT_MAX_LIMIT : Integer.MAX_VALUE;
+        this.maxQueued = maxQueued;
+        this.limit = adaptive ? Math.min(INITIAL_LIMIT, this.maxLimit) : this.maxLimit;
+    }
+
+    /**
+     * Creates a limiter which never limits.
+     *
+     * @return the limiter
+     */
+    public static QueryLimiter unlimited() {
+        return new QueryLimiter(0, false, 0);
+    }
+
+    boolean tryAcquire() {
+        if (this.inFlight >= this.limit) {
+            return false;
+        }
+        this.inFlight++;
+        return true;
+    }
+
+    void onSuccess(long rttNanos) {
+        var inFlight = this.inFlight--;
+        this.rttNanos = this.rttNanos == 0 ? rttNanos : this.rttNanos + (rttNanos - this.rttNanos) / 8;
+        if (!this.adaptive) {
+            return;
+        }
+
+        if (++this.samples >= PROBE_SAMPLES_PER_LIMIT * this.limit) {
+            // the peer may have become faster or slower since, start over with the current sample
+            this.samples = 0;
+            this.minRttNanos = rttNanos;
+        } else if (rttNanos < this.minRttNanos) {
+            this.minRttNanos = rttNanos;
+        }
+
+        var limit = this.limit;
+        if (inFlight * 2 < limit) {
+            // the window was not used, the sample says nothing about a larger limit
+            return;
+        }
+        var log = Math.max(1, (int) Math.log10(limit));
+        var queueSize = (int) Math.ceil(limit * (1 - (double) this.minRttNanos / rttNanos));
+        if (queueSize <= log) {
+            limit += 6 * log;
+        } else if (queueSize < 3 * log) {
+            limit += log;
+        } else if (queueSize > 6 * log) {
+            limit -= log;
+        }
+        this.limit = Math.clamp(limit, MIN_LIMIT, this.maxLimit);
+    }
+
+    void onDropped() {
+        this.inFlight--;
+        if (this.adaptive) {
+            var limit = this.limit;
+            this.limit = Math.max(MIN_LIMIT, limit - Math.max(1, (int) Math.log10(limit)));
+        }
+    }
+
+    void onIgnored() {
+        this.inFlight--;
+    }
+
+    void onRejected() {
+        this.rejected++;
+    }
+
+    void queued(int queued) {
+        this.queued = queued;
+    }
+}
@@ -0,0 +1,40 @@
+package de.dataflair.netty5.common.packet;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serial;
+
+/**
+ * Thrown if a query was not sent because its connection already has as many queries in flight and queued as
+ * its {@link QueryLimiter} allows.
+ */
+@Getter
+public final class QueryRejectedException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final transient RequestPacket request;
+
+    public QueryRejectedException(@NotNull RequestPacket request, int limit) {
+        super("Query " + request.getClass().getName() + " rejected, the limit of " + limit + " queries in flight is reached");
+        this.request = request;
+    }
+}
@@ -0,0 +1,242 @@
+package de.dataflair.netty5.common.packet;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import de.dataflair.netty5.common.packet.stream.StreamCreditPacket;
+import de.dataflair.netty5.common.packet.stream.StreamEndPacket;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The responses of a streamed query, see {@link Netty5PacketTransmitter#queryStream(RequestPacket, Class)}.
+ * <p>
+ * The query is sent once the publisher is subscribed, the demand of the subscriber is forwarded to the responder as
+ * {@link StreamCreditPacket}s. The stream ends with the {@link StreamEndPacket} of the responder, and fails if no
+ * response arrives within the idle timeout while demand is outstanding. The future of the query completes along
+ * with the stream, so the query is tracked, limited and failed on close like any other.
+ */
+final class QueryStream<P extends RespondPacket> implements Flow.Publisher<P>, Flow.Subscription {
+    private static final Object COMPLETE = new Object();
+
+    private final Netty5PacketTransmitter transmitter;
+    private final RequestPacket request;
+    private final Class<P> type;
+    private final long idleTimeoutMillis;
+    private final CompletableFuture<Packet> future = new CompletableFuture<>();
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private Flow.Subscriber<? super P> subscriber;
+    private @Nullable Executor callbackExecutor;
+
+    // owned by the event loop
+    private long queryId;
+    private long outstanding;
+    private long unsentCredits;
+    private long received;
+    // the end marker, held back until the responses it counts arrived
+    private @Nullable StreamEndPacket end;
+    private QueryTimer.@Nullable Timeout idleTimeout;
+
+    // signals to the subscriber, delivered by one thread at a time
+    private final Queue<Object> signals = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingSignals = new AtomicInteger();
+    private volatile boolean cancelled;
+
+    QueryStream(@NotNull Netty5PacketTransmitter transmitter, @NotNull RequestPacket request, @NotNull Class<P> type,
+                long idleTimeoutMillis) {
+        this.transmitter = transmitter;
+        this.request = request;
+        this.type = type;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    RequestPacket requestPacket() {
+        return this.request;
+    }
+
+    CompletableFuture<Packet> future() {
+        return this.future;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super P> subscriber) {
+        if (!this.subscribed.compareAndSet(false, true)) {
+            // the request packet can only be sent once
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("A query stream can only be subscribed once"));
+            return;
+        }
+        this.subscriber = subscriber;
+        this.callbackExecutor = this.transmitter.callbackExecutor();
+        this.future.whenComplete((_, cause) -> this.signal(cause == null ? COMPLETE : cause));
+        subscriber.onSubscribe(this);
+        this.transmitter.runOnLoop(() -> this.transmitter.openStream(this));
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            this.future.completeExceptionally(new IllegalArgumentException("Non-positive demand " + n));
+            return;
+        }
+        this.transmitter.runOnLoop(() -> this.credit(n));
+    }
+
+    @Override
+    public void cancel() {
+        this.cancelled = true;
+        this.future.cancel(false);
+    }
+
+    /**
+     * Called on the event loop once the query was sent.
+     */
+    void sent(long queryId) {
+        this.queryId = queryId;
+        if (this.unsentCredits > 0) {
+            this.credit(this.unsentCredits);
+            this.unsentCredits = 0;
+        }
+    }
+
+    /**
+     * Called on the event loop for every response which belongs to the query.
+     */
+    void received(@NotNull RespondPacket packet) {
+        if (packet instanceof StreamEndPacket end) {
+            // chunked responses are overtaken by the small end marker
+            this.end = end;
+            this.completeIfEnded();
+            return;
+        }
+        if (!this.type.isInstance(packet) || this.outstanding == 0) {
+            this.future.completeExceptionally(new QueryFailedException(this.request,
+                    new IllegalStateException("Unexpected response " + packet.getClass().getName())));
+            return;
+        }
+        this.outstanding--;
+        this.received++;
+        this.signal(packet);
+        this.armIdleTimeout();
+        this.completeIfEnded();
+    }
+
+    private void completeIfEnded() {
+        if (this.end == null || this.received < this.end.responses()) {
+            return;
+        }
+        if (this.end.error() == null) {
+            this.future.complete(null);
+        } else {
+            this.future.completeExceptionally(new QueryFailedException(this.request, new IllegalStateException(this.end.error())));
+        }
+    }
+
+    /**
+     * Called on the event loop once the stream ended, tells the responder if it was cancelled.
+     */
+    void closed(@Nullable Throwable cause) {
+        if (this.idleTimeout != null) {
+            this.idleTimeout.cancel();
+        }
+        if (cause instanceof CancellationException && this.queryId != 0) {
+            this.transmitter.publishPacket(new StreamCreditPacket(this.queryId, StreamCreditPacket.CANCEL));
+        }
+    }
+
+    private void credit(long n) {
+        if (this.future.isDone()) {
+            return;
+        }
+        if (this.queryId == 0) {
+            this.unsentCredits = add(this.unsentCredits, n);
+            return;
+        }
+        this.outstanding = add(this.outstanding, n);
+        this.transmitter.publishPacket(new StreamCreditPacket(this.queryId, n));
+        this.armIdleTimeout();
+    }
+
+    private void armIdleTimeout() {
+        if (this.idleTimeout != null) {
+            this.idleTimeout.cancel();
+            this.idleTimeout = null;
+        }
+        if (this.outstanding > 0 && !this.future.isDone()) {
+            this.idleTimeout = QueryTimer.of(this.transmitter.executor()).schedule(() -> this.future.completeExceptionally(
+                    new QueryTimeoutException(this.request, this.idleTimeoutMillis, TimeUnit.MILLISECONDS)),
+                    this.idleTimeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void signal(Object signal) {
+        this.signals.add(signal);
+        if (this.pendingSignals.getAndIncrement() == 0) {
+            this.transmitter.dispatch(this.callbackExecutor, this::deliver);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void deliver() {
+        var missed = 1;
+        do {
+            Object signal;
+            while ((signal = this.signals.poll()) != null) {
+                if (this.cancelled) {
+                    continue;
+                }
+                try {
+                    if (signal == COMPLETE) {
+                        this.subscriber.onComplete();
+                    } else if (signal instanceof Throwable cause) {
+                        this.subscriber.onError(cause);
+                    } else {
+                        this.subscriber.onNext((P) signal);
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("Error in subscriber of streamed query " + this.request.getClass().getName());
+                    e.printStackTrace();
+                    this.cancel();
+                }
+            }
+            missed = this.pendingSignals.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private static long add(long credits, long n) {
+        return Long.MAX_VALUE - credits < n ? Long.MAX_VALUE : credits + n;
+    }
+}
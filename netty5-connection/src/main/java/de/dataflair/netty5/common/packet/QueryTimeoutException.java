@@ -0,0 +1,40 @@
+package de.dataflair.netty5.common.packet;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serial;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thrown if a query did not receive its response within the given time.
+ */
+@Getter
+public final class QueryTimeoutException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final transient RequestPacket request;
+
+    public QueryTimeoutException(@NotNull RequestPacket request, long timeout, @NotNull TimeUnit unit) {
+        super("No response to " + request.getClass().getName() + " within " + timeout + " " + unit.name().toLowerCase());
+        this.request = request;
+    }
+}
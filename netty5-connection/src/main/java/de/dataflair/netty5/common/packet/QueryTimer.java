@@ -0,0 +1,214 @@
+package de.dataflair.netty5.common.packet;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import io.netty5.util.concurrent.EventExecutor;
+import io.netty5.util.concurrent.Future;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timer wheel which enforces query timeouts on the event loop it belongs to.
+ * <p>
+ * Timeouts are sorted into {@value #WHEEL_SIZE} buckets of {@value #TICK_MILLIS} milliseconds, so scheduling and
+ * cancelling are constant time regardless of the number of pending queries, which is what matters when most
+ * queries are answered long before they expire. The wheel only ticks while timeouts are pending, and all
+ * timeouts of an event loop share one wheel, so no further threads are involved.
+ */
+public final class QueryTimer {
+    static final long TICK_MILLIS = 10;
+    private static final int WHEEL_SIZE = 512;
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+
+    private static final Map<EventExecutor, QueryTimer> timers = new ConcurrentHashMap<>();
+
+    private final EventExecutor executor;
+    private final Timeout[] buckets = new Timeout[WHEEL_SIZE];
+    private final long startNanos = System.nanoTime();
+    private long tick;
+    private int pending;
+    private Future<Void> ticker;
+
+    private QueryTimer(@NotNull EventExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the timer wheel of the given event loop.
+     *
+     * @param executor the event loop
+     * @return the shared timer of the event loop
+     */
+    public static @NotNull QueryTimer of(@NotNull EventExecutor executor) {
+        var timer = timers.get(executor);
+        if (timer != null) {
+            return timer;
+        }
+        return timers.computeIfAbsent(executor, _ -> {
+            executor.terminationFuture().addListener(_ -> timers.remove(executor));
+            return new QueryTimer(executor);
+        });
+    }
+
+    /**
+     * Runs the task on the event loop once the delay expired, unless the returned timeout was cancelled before.
+     * The task runs at most one tick late.
+     *
+     * @param task  the task to run
+     * @param delay the delay
+     * @param unit  the unit of the delay
+     * @return the timeout, which can be cancelled from any thread
+     */
+    public @NotNull Timeout schedule(@NotNull Runnable task, long delay, @NotNull TimeUnit unit) {
+        var timeout = new Timeout(this, task, System.nanoTime() + unit.toNanos(delay));
+        if (this.executor.inEventLoop()) {
+            this.add(timeout);
+        } else {
+            this.executor.execute(() -> this.add(timeout));
+        }
+        return timeout;
+    }
+
+    private void add(Timeout timeout) {
+        if (timeout.cancelled) {
+            return;
+        }
+        if (this.pending == 0) {
+            // the wheel stood still, skip the idle ticks
+            this.tick = Math.max(this.tick, this.currentTick());
+        }
+        var deadlineTick = Math.max(this.tick, (timeout.deadlineNanos - this.startNanos + TICK_NANOS - 1) / TICK_NANOS);
+        timeout.rounds = (deadlineTick - this.tick) / WHEEL_SIZE;
+        var index = (int) (deadlineTick & (WHEEL_SIZE - 1));
+
+        timeout.bucket = index;
+        timeout.next = this.buckets[index];
+        if (timeout.next != null) {
+            timeout.next.previous = timeout;
+        }
+        this.buckets[index] = timeout;
+
+        if (this.pending++ == 0) {
+            this.ticker = this.executor.scheduleAtFixedRate(this::advance, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void remove(Timeout timeout) {
+        if (timeout.bucket < 0) {
+            return;
+        }
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            this.buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.bucket = -1;
+        timeout.next = null;
+        timeout.previous = null;
+
+        if (--this.pending == 0 && this.ticker != null) {
+            this.ticker.cancel();
+            this.ticker = null;
+        }
+    }
+
+    private void advance() {
+        // catches up with ticks which were missed while the event loop was busy
+        var currentTick = this.currentTick();
+        while (this.tick <= currentTick && this.pending > 0) {
+            // unlinks the expired timeouts of the bucket first, as their tasks may cancel the other timeouts
+            Timeout expired = null;
+            Timeout last = null;
+            var timeout = this.buckets[(int) (this.tick & (WHEEL_SIZE - 1))];
+            while (timeout != null) {
+                var next = timeout.next;
+                if (timeout.rounds-- <= 0) {
+                    this.remove(timeout);
+                    if (last == null) {
+                        expired = timeout;
+                    } else {
+                        last.next = timeout;
+                    }
+                    last = timeout;
+                }
+                timeout = next;
+            }
+            this.tick++;
+
+            while (expired != null) {
+                var next = expired.next;
+                expired.next = null;
+                if (!expired.cancelled) {
+                    this.expire(expired);
+                }
+                expired = next;
+            }
+        }
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - this.startNanos) / TICK_NANOS;
+    }
+
+    private void expire(Timeout timeout) {
+        try {
+            timeout.task.run();
+        } catch (Exception e) {
+            System.err.println("Error while expiring query timeout");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Pending timeout of a {@link QueryTimer}.
+     */
+    public static final class Timeout {
+        private final QueryTimer timer;
+        private final Runnable task;
+        private final long deadlineNanos;
+        private volatile boolean cancelled;
+        private long rounds;
+        private int bucket = -1;
+        private Timeout next;
+        private Timeout previous;
+
+        private Timeout(QueryTimer timer, Runnable task, long deadlineNanos) {
+            this.timer = timer;
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Cancels the timeout, so its task does not run.
+         */
+        public void cancel() {
+            this.cancelled = true;
+            if (this.timer.executor.inEventLoop()) {
+                this.timer.remove(this);
+            } else {
+                this.timer.executor.execute(() -> this.timer.remove(this));
+            }
+        }
+    }
+}
@@ -23,12 +23,13 @@ import lombok.Getter;
 import lombok.Setter;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.UUID;
-
 @Setter
 @Getter
 public abstract class RequestPacket extends Packet implements CodecBuffer.WriteReadStream {
-    protected UUID queryId;
+    /**
+     * Id which correlates a query with its response, unique per connection.
+     */
+    protected long queryId;
 
     public RequestPacket() {
         super();
@@ -36,7 +37,18 @@ public abstract class RequestPacket extends Packet implements CodecBuffer.WriteR
 
     public RequestPacket(@NotNull CodecBuffer buffer) {
         super(buffer);
-        this.queryId = buffer.readUniqueId();
+        this.queryId = buffer.readVarLong();
         this.readBuffer(buffer);
     }
+
+    @Override
+    public void write(@NotNull CodecBuffer target) {
+        target.writeVarLong(this.queryId);
+        this.writeBuffer(target);
+    }
+
+    @Override
+    public int estimateSize() {
+        return CodecBuffer.varLongSize(this.queryId) + super.estimateSize();
+    }
 }
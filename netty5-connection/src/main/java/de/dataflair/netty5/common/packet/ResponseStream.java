@@ -0,0 +1,117 @@
+package de.dataflair.netty5.common.packet;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import de.dataflair.netty5.common.packet.stream.StreamCreditPacket;
+import de.dataflair.netty5.common.packet.stream.StreamEndPacket;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends the responses of a streamed query, see {@link Netty5PacketTransmitter#listenQueryStream(Class, java.util.function.Function)}.
+ * <p>
+ * Subscribes to the publisher of the responder and requests as many responses as the querying peer granted with
+ * {@link StreamCreditPacket}s, so the responder produces them no faster than they are consumed. The subscription is
+ * driven by the event loop of the connection, the responses may be published from any thread.
+ */
+final class ResponseStream implements Flow.Subscriber<RespondPacket> {
+    private final Netty5PacketTransmitter connection;
+    private final long queryId;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    // the publisher signals one at a time, so the count is only written by one thread
+    private volatile long sent;
+
+    // owned by the event loop
+    private @Nullable Flow.Subscription subscription;
+    private long credits;
+    private boolean cancelled;
+
+    ResponseStream(@NotNull Netty5PacketTransmitter connection, long queryId) {
+        this.connection = connection;
+        this.queryId = queryId;
+    }
+
+    /**
+     * Called on the event loop for every credit packet of the querying peer.
+     */
+    void credit(long credits) {
+        if (this.cancelled) {
+            return;
+        }
+        if (credits == StreamCreditPacket.CANCEL) {
+            this.cancelled = true;
+            this.connection.closeResponseStream(this.queryId);
+            if (this.subscription != null) {
+                this.subscription.cancel();
+            }
+        } else if (this.subscription != null) {
+            this.subscription.request(credits);
+        } else {
+            this.credits = Long.MAX_VALUE - this.credits < credits ? Long.MAX_VALUE : this.credits + credits;
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.connection.runOnLoop(() -> {
+            if (this.cancelled || this.subscription != null) {
+                subscription.cancel();
+                return;
+            }
+            this.subscription = subscription;
+            if (this.credits > 0) {
+                subscription.request(this.credits);
+                this.credits = 0;
+            }
+        });
+    }
+
+    @Override
+    public void onNext(RespondPacket item) {
+        if (this.finished.get()) {
+            return;
+        }
+        item.queryId(this.queryId);
+        this.sent++;
+        this.connection.publishPacket(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        this.finish(throwable.getMessage() != null ? throwable.getMessage() : throwable.getClass().getName());
+    }
+
+    @Override
+    public void onComplete() {
+        this.finish(null);
+    }
+
+    private void finish(@Nullable String error) {
+        if (this.finished.getAndSet(true)) {
+            return;
+        }
+        this.connection.runOnLoop(() -> this.connection.closeResponseStream(this.queryId));
+        var end = new StreamEndPacket(error, this.sent);
+        end.queryId(this.queryId);
+        this.connection.publishPacket(end);
+    }
+}
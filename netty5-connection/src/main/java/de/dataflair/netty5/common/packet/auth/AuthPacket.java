@@ -20,28 +20,62 @@ package de.dataflair.netty5.common.packet.auth;
 
 import de.dataflair.netty5.Netty5ClientChannel;
 import de.dataflair.netty5.common.codec.CodecBuffer;
+import de.dataflair.netty5.common.codec.CompressionDictionary;
+import de.dataflair.netty5.common.codec.FrameCompression;
+import de.dataflair.netty5.common.codec.FrameCompressionHandler;
 import de.dataflair.netty5.common.packet.Packet;
+import de.dataflair.netty5.common.packet.PacketRegistry;
 import lombok.Getter;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Getter
 public class AuthPacket extends Packet {
     protected final Netty5ClientChannel.Identity identity;
     protected final Map<String, String> properties;
+    /**
+     * Class names of the packet types which are transmitted by id, see {@link PacketRegistry}.
+     */
+    protected final List<String> packetTypes;
+    /**
+     * Compression of all following frames, see {@link FrameCompressionHandler}.
+     */
+    protected final FrameCompression compression;
+    /**
+     * Ids of the compression dictionaries the client holds, see {@link CompressionDictionary}.
+     */
+    protected final int[] dictionaries;
 
     public AuthPacket(@NotNull Netty5ClientChannel.Identity identity, @NotNull Map<String, String> properties) {
+        this(identity, properties, FrameCompression.NONE);
+    }
+
+    public AuthPacket(@NotNull Netty5ClientChannel.Identity identity,
+                      @NotNull Map<String, String> properties,
+                      @NotNull FrameCompression compression) {
         this.identity = identity;
         this.properties = properties;
+        this.packetTypes = PacketRegistry.packetTypeNames();
+        this.compression = compression;
+        this.dictionaries = CompressionDictionary.registeredIds();
         buffer.writeStream(this.identity)
-                .writeMap(this.properties, CodecBuffer::writeString, CodecBuffer::writeString);
+                .writeMap(this.properties, CodecBuffer::writeString, CodecBuffer::writeString)
+                .writeStringList(this.packetTypes)
+                .writeEnum(this.compression.algorithm())
+                .writeInt(this.compression.threshold())
+                .writeIntArray(this.dictionaries);
     }
 
     public AuthPacket(@NotNull CodecBuffer buffer) {
         super(buffer);
         this.identity = buffer.readStream(new Netty5ClientChannel.Identity());
         this.properties = buffer.readMap(new HashMap<>(), buffer::readString, buffer::readString);
+        this.packetTypes = buffer.readStringList(new ArrayList<>());
+        this.compression = new FrameCompression(buffer.readEnum(FrameCompression.Algorithm.class), buffer.readInt());
+        this.dictionaries = buffer.readIntArray();
     }
 }
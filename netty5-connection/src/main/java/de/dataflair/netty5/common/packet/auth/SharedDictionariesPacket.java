@@ -0,0 +1,44 @@
+package de.dataflair.netty5.common.packet.auth;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import de.dataflair.netty5.common.codec.CodecBuffer;
+import de.dataflair.netty5.common.codec.CompressionDictionary;
+import de.dataflair.netty5.common.packet.Packet;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Answer of the server to an {@link AuthPacket}, with the ids of the announced compression dictionaries which the
+ * server holds as well. Both peers only use these for outbound frames, see {@link CompressionDictionary}.
+ */
+@Getter
+public class SharedDictionariesPacket extends Packet {
+    protected final int[] dictionaries;
+
+    public SharedDictionariesPacket(int @NotNull [] dictionaries) {
+        this.dictionaries = dictionaries;
+        buffer.writeIntArray(this.dictionaries);
+    }
+
+    public SharedDictionariesPacket(@NotNull CodecBuffer buffer) {
+        super(buffer);
+        this.dictionaries = buffer.readIntArray();
+    }
+}
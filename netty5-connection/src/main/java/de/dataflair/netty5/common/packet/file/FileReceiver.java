@@ -0,0 +1,198 @@
+package de.dataflair.netty5.common.packet.file;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import de.dataflair.netty5.Netty5ClientChannel;
+import io.netty5.util.internal.ThreadExecutorMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Listener which writes received {@link FileSegmentPacket}s into their target files.
+ * <p>
+ * Segments are verified and written at their offset, so only one segment of a file is held in memory at a
+ * time. Every transfer has to continue where the previous segment ended, and completes once the target holds
+ * the file up to its total length. A segment with a broken checksum or at an unexpected offset truncates the
+ * target to the last contiguous position and aborts the transfer, so {@link #resumeOffset(Path)} returns the
+ * position from which the sender has to resume with a new transfer. The remaining segments of an aborted transfer
+ * are dropped. As segments have to arrive in order, the receiver has to run on the event loop without a callback
+ * executor, transfers which are received on another thread are aborted.
+ * <p>
+ * The file names are chosen by the peer, so they have to be resolved with {@link #resolve(Path, String)} or a
+ * similar check, which keeps the targets within the directory.
+ * <pre>{@code
+ * transmitter.listen(FileSegmentPacket.class, new FileReceiver(packet -> FileReceiver.resolve(directory, packet.name()),
+ *         (packet, file) -> System.out.println("Received " + file)));
+ * }</pre>
+ */
+public final class FileReceiver implements BiConsumer<Netty5ClientChannel, FileSegmentPacket> {
+    private final Function<FileSegmentPacket, Path> targets;
+    private final BiConsumer<FileSegmentPacket, Path> completion;
+    private final Map<UUID, Target> openTargets = new ConcurrentHashMap<>();
+    // transfers which were aborted before their last segment arrived
+    private final Set<UUID> abortedTransfers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param targets    resolves the target file of a transfer from its first received segment
+     * @param completion called with the last segment once a file was received completely
+     */
+    public FileReceiver(@NotNull Function<FileSegmentPacket, Path> targets,
+                        @NotNull BiConsumer<FileSegmentPacket, Path> completion) {
+        this.targets = targets;
+        this.completion = completion;
+    }
+
+    /**
+     * Returns the offset from which a transfer into the given target has to be resumed.
+     *
+     * @param target the target file
+     * @return the amount of bytes which were already received
+     * @throws IOException if the size of the target cannot be read
+     */
+    public static long resumeOffset(@NotNull Path target) throws IOException {
+        return Files.exists(target) ? Files.size(target) : 0;
+    }
+
+    /**
+     * Resolves the file name of a transfer within the given directory.
+     *
+     * @param directory the directory of the received files
+     * @param name      the file name sent by the peer
+     * @return the normalized target file
+     * @throws IllegalArgumentException if the name is absolute or leaves the directory
+     */
+    public static @NotNull Path resolve(@NotNull Path directory, @NotNull String name) {
+        var root = directory.toAbsolutePath().normalize();
+        var path = root.resolve(name).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new IllegalArgumentException("File " + name + " is outside of " + root);
+        }
+        return path;
+    }
+
+    @Override
+    public void accept(Netty5ClientChannel sender, FileSegmentPacket packet) {
+        if (this.abortedTransfers.contains(packet.transferId())) {
+            if (packet.last()) {
+                // the sender is done with the transfer, no more segments follow
+                this.abortedTransfers.remove(packet.transferId());
+            }
+            return;
+        }
+
+        if (ThreadExecutorMap.currentExecutor() == null) {
+            // segments on a callback executor may overtake each other
+            var target = this.openTargets.get(packet.transferId());
+            if (target != null) {
+                this.close(packet.transferId(), target);
+            }
+            this.markAborted(packet);
+            System.err.println("File " + packet.name() + " is received on a callback executor, transfer aborted");
+            return;
+        }
+
+        Target target = null;
+        try {
+            target = this.openTargets.get(packet.transferId());
+            if (target == null) {
+                var path = this.targets.apply(packet);
+                var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                // a transfer may resume the held data, but must not leave a gap in front of it
+                target = new Target(path, channel, Math.min(packet.offset(), channel.size()));
+                this.openTargets.put(packet.transferId(), target);
+            }
+
+            if (packet.offset() != target.nextOffset || packet.offset() + packet.length() > packet.totalLength()) {
+                this.abort(packet, target);
+                System.err.println("Unexpected segment of file " + packet.name() + " at offset " + packet.offset()
+                        + " (expected " + target.nextOffset + "), transfer aborted");
+                return;
+            }
+
+            if (!packet.verify()) {
+                this.abort(packet, target);
+                System.err.println("Checksum mismatch of file " + packet.name() + " at offset " + packet.offset() + ", transfer aborted");
+                return;
+            }
+
+            packet.writeTo(target.channel);
+            target.nextOffset += packet.length();
+            if (target.nextOffset == packet.totalLength()) {
+                // the target may hold data of an earlier, longer file behind the received one
+                target.channel.truncate(packet.totalLength());
+                this.close(packet.transferId(), target);
+                this.completion.accept(packet, target.path);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            if (target != null) {
+                this.close(packet.transferId(), target);
+            }
+            this.markAborted(packet);
+            System.err.println("Error while receiving file " + packet.name());
+            e.printStackTrace();
+        }
+    }
+
+    private void abort(FileSegmentPacket packet, Target target) throws IOException {
+        try {
+            target.channel.truncate(target.nextOffset);
+        } finally {
+            this.close(packet.transferId(), target);
+            this.markAborted(packet);
+        }
+    }
+
+    private void markAborted(FileSegmentPacket packet) {
+        if (!packet.last()) {
+            this.abortedTransfers.add(packet.transferId());
+        }
+    }
+
+    private void close(UUID transferId, Target target) {
+        this.openTargets.remove(transferId);
+        try {
+            target.channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static final class Target {
+        private final Path path;
+        private final FileChannel channel;
+        // the end of the contiguous data, where the next segment has to start
+        private long nextOffset;
+
+        private Target(Path path, FileChannel channel, long nextOffset) {
+            this.path = path;
+            this.channel = channel;
+            this.nextOffset = nextOffset;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package de.dataflair.netty5.common.packet.file;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import de.dataflair.netty5.common.codec.CodecBuffer;
+import de.dataflair.netty5.common.packet.Packet;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+
+/**
+ * A segment of a file transfer. The segment data is not part of the packet when it is sent: it follows the
+ * metadata straight from the file as {@link io.netty5.channel.FileRegion}, see {@link FileTransfer}.
+ * <p>
+ * Received segments reference their data within the frame buffer, so they have to be written while they are
+ * dispatched, e.g. with a {@link FileReceiver}.
+ */
+@Getter
+public final class FileSegmentPacket extends Packet {
+    private final UUID transferId;
+    private final String name;
+    private final long offset;
+    private final long totalLength;
+    private final int checksum;
+
+    /**
+     * Creates the metadata of an outbound segment.
+     *
+     * @param transferId  the id of the transfer
+     * @param name        the name of the transferred file
+     * @param offset      the position of the segment within the file
+     * @param totalLength the length of the whole file
+     * @param checksum    the CRC32C of the segment data
+     */
+    public FileSegmentPacket(@NotNull UUID transferId, @NotNull String name, long offset, long totalLength, int checksum) {
+        this.transferId = transferId;
+        this.name = name;
+        this.offset = offset;
+        this.totalLength = totalLength;
+        this.checksum = checksum;
+        this.buffer.writeUniqueId(transferId)
+                .writeString(name)
+                .writeVarLong(offset)
+                .writeVarLong(totalLength)
+                .writeInt(checksum);
+    }
+
+    public FileSegmentPacket(@NotNull CodecBuffer buffer) {
+        super(buffer);
+        this.transferId = buffer.readUniqueId();
+        this.name = buffer.readString();
+        this.offset = buffer.readVarLong();
+        this.totalLength = buffer.readVarLong();
+        this.checksum = buffer.readInt();
+    }
+
+    /**
+     * Returns the length of the received segment data.
+     *
+     * @return the length in bytes
+     */
+    public int length() {
+        return this.buffer.origin().readableBytes();
+    }
+
+    /**
+     * Returns whether this segment completes the file.
+     *
+     * @return true if the segment ends at the total length
+     */
+    public boolean last() {
+        return this.offset + this.length() >= this.totalLength;
+    }
+
+    /**
+     * Verifies the received segment data against its checksum.
+     *
+     * @return true if the data is intact
+     */
+    public boolean verify() {
+        var crc = new CRC32C();
+        try (var components = this.buffer.origin().forEachComponent()) {
+            for (var component = components.firstReadable(); component != null; component = component.nextReadable()) {
+                crc.update(component.readableBuffer());
+            }
+        }
+        return (int) crc.getValue() == this.checksum;
+    }
+
+    /**
+     * Writes the received segment data into the target at the offset of the segment, without copying it.
+     *
+     * @param target the target file
+     * @throws IOException if the target cannot be written
+     */
+    public void writeTo(@NotNull FileChannel target) throws IOException {
+        var position = this.offset;
+        try (var components = this.buffer.origin().forEachComponent()) {
+            for (var component = components.firstReadable(); component != null; component = component.nextReadable()) {
+                var data = component.readableBuffer();
+                while (data.hasRemaining()) {
+                    position += target.write(data, position);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package de.dataflair.netty5.common.packet.file;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * Outbound message which sends a file from the given offset on, see
+ * {@link de.dataflair.netty5.Netty5ClientChannel#sendFile(Path, String, long)}.
+ * <p>
+ * The file is sent in segments. Every segment is a {@link FileSegmentPacket} with the checksum of the segment,
+ * followed by the segment data, which is transferred straight from the file with {@code sendfile} where the
+ * transport supports it. A transfer which was interrupted is resumed by sending the file again from the
+ * offset the receiver already holds.
+ *
+ * @param transferId the id of the transfer
+ * @param file       the file to send
+ * @param name       the name under which the receiver stores the file
+ * @param offset     the position to start the transfer at
+ */
+public record FileTransfer(@NotNull UUID transferId, @NotNull Path file, @NotNull String name, long offset) {
+}
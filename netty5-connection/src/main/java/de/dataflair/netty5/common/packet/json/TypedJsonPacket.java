@@ -0,0 +1,69 @@
+package de.dataflair.netty5.common.packet.json;
+
+import de.dataflair.netty5.common.codec.CodecBuffer;
+import de.dataflair.netty5.common.packet.Packet;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+
+/**
+ * Packet which binds its JSON content straight to an object of type {@code T}. The value is serialized into
+ * the outbound buffer while the packet is encoded and deserialized from the frame, without a JSON String.
+ * <p>
+ * Subclasses bind the type argument and provide both constructors:
+ * <pre>{@code
+ * public class SettingsPacket extends TypedJsonPacket<Settings> {
+ *     public SettingsPacket(Settings settings) { super(settings); }
+ *     public SettingsPacket(@NotNull CodecBuffer buffer) { super(buffer); }
+ * }
+ * }</pre>
+ *
+ * @param <T> the type of the JSON value
+ */
+@Getter
+public abstract class TypedJsonPacket<T> extends Packet implements CodecBuffer.WriteReadStream {
+    private static final ClassValue<Type> VALUE_TYPES = new ClassValue<>() {
+        @Override
+        protected Type computeValue(Class<?> type) {
+            return valueType(type);
+        }
+    };
+
+    private @Nullable T value;
+
+    public TypedJsonPacket(@Nullable T value) {
+        this.value = value;
+    }
+
+    public TypedJsonPacket(@NotNull CodecBuffer buffer) {
+        super(buffer);
+        this.readBuffer(buffer);
+    }
+
+    @Override
+    public void writeBuffer(@NotNull CodecBuffer codecBuffer) {
+        codecBuffer.writeJson(this.value, VALUE_TYPES.get(getClass()));
+    }
+
+    @Override
+    public void readBuffer(@NotNull CodecBuffer codecBuffer) {
+        this.value = codecBuffer.readJson(VALUE_TYPES.get(getClass()));
+    }
+
+    private static Type valueType(Class<?> type) {
+        for (var current = type; current.getSuperclass() != null; current = current.getSuperclass()) {
+            if (current.getSuperclass() == TypedJsonPacket.class) {
+                if (current.getGenericSuperclass() instanceof ParameterizedType parameterized
+                        && !(parameterized.getActualTypeArguments()[0] instanceof TypeVariable<?>)) {
+                    return parameterized.getActualTypeArguments()[0];
+                }
+                break;
+            }
+        }
+        throw new IllegalStateException(type.getName() + " does not bind the value type of TypedJsonPacket");
+    }
+}
@@ -0,0 +1,78 @@
+package de.dataflair.netty5.common.packet.stream;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import de.dataflair.netty5.common.codec.CodecBuffer;
+import de.dataflair.netty5.common.packet.Packet;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Grants the responder of a streamed query more responses, or cancels the stream. Sent by the querying peer
+ * whenever the subscriber of {@link de.dataflair.netty5.common.packet.Netty5PacketTransmitter#queryStream} signals
+ * demand.
+ */
+@Getter
+public final class StreamCreditPacket extends Packet implements CodecBuffer.WriteReadStream {
+    /**
+     * Credits which cancel the stream. Subscribers never request zero responses, so the value is free.
+     */
+    public static final long CANCEL = 0;
+
+    private long queryId;
+    private long credits;
+
+    /**
+     * @param queryId the id of the streamed query
+     * @param credits the number of further responses, or {@link #CANCEL}
+     */
+    public StreamCreditPacket(long queryId, long credits) {
+        this.queryId = queryId;
+        this.credits = credits;
+    }
+
+    public StreamCreditPacket(@NotNull CodecBuffer buffer) {
+        super(buffer);
+        this.readBuffer(buffer);
+    }
+
+    /**
+     * Returns whether the querying peer is no longer interested in the stream.
+     *
+     * @return true if the stream was cancelled
+     */
+    public boolean cancelled() {
+        return this.credits == CANCEL;
+    }
+
+    @Override
+    public void writeBuffer(@NotNull CodecBuffer codecBuffer) {
+        codecBuffer.writeVarLong(this.queryId).writeVarLong(this.credits);
+    }
+
+    @Override
+    public void readBuffer(@NotNull CodecBuffer codecBuffer) {
+        this.queryId = codecBuffer.readVarLong();
+        this.credits = codecBuffer.readVarLong();
+    }
+
+    @Override
+    public int encodedSize(@NotNull CodecBuffer.Protocol protocol) {
+        return CodecBuffer.varLongSize(this.queryId) + CodecBuffer.varLongSize(this.credits);
+    }
+}
@@ -0,0 +1,60 @@
+package de.dataflair.netty5.common.packet.stream;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import de.dataflair.netty5.common.codec.CodecBuffer;
+import de.dataflair.netty5.common.packet.RespondPacket;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Marks the end of the responses of a streamed query. Carries the number of sent responses, as a large response
+ * which is sent in chunks arrives after the end marker, and the error message if the stream of the responder
+ * failed.
+ */
+@Getter
+public final class StreamEndPacket extends RespondPacket {
+    private @Nullable String error;
+    private long responses;
+
+    /**
+     * @param error     the error of the responder, or null if the stream completed normally
+     * @param responses the number of responses which were sent before
+     */
+    public StreamEndPacket(@Nullable String error, long responses) {
+        this.error = error;
+        this.responses = responses;
+    }
+
+    public StreamEndPacket(@NotNull CodecBuffer buffer) {
+        super(buffer);
+    }
+
+    @Override
+    public void writeBuffer(@NotNull CodecBuffer codecBuffer) {
+        codecBuffer.writeNullable(this.error, _ -> codecBuffer.writeString(this.error));
+        codecBuffer.writeVarLong(this.responses);
+    }
+
+    @Override
+    public void readBuffer(@NotNull CodecBuffer codecBuffer) {
+        this.error = codecBuffer.readNullable(String.class, codecBuffer::readString);
+        this.responses = codecBuffer.readVarLong();
+    }
+}
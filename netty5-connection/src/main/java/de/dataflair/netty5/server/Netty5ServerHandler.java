@@ -19,8 +19,14 @@ package de.dataflair.netty5.server;
 import de.dataflair.netty5.Netty5ClientChannel;
 import de.dataflair.netty5.actions.ConnectionAction;
 import de.dataflair.netty5.client.Netty5ClientPacketTransmitter;
+import de.dataflair.netty5.common.codec.CompressionDictionary;
+import de.dataflair.netty5.common.codec.FrameCompressionHandler;
+import de.dataflair.netty5.common.collection.IntArrayList;
 import de.dataflair.netty5.common.packet.Packet;
+import de.dataflair.netty5.common.packet.PacketBundle;
+import de.dataflair.netty5.common.packet.PacketRegistry;
 import de.dataflair.netty5.common.packet.auth.AuthPacket;
+import de.dataflair.netty5.common.packet.auth.SharedDictionariesPacket;
 import de.dataflair.netty5.filter.ConnectionFilter;
 import de.dataflair.netty5.filter.PacketReceiveFilter;
 import io.netty5.channel.Channel;
@@ -30,6 +36,7 @@ import lombok.AllArgsConstructor;
 
 import java.io.IOException;
 import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -42,6 +49,10 @@ public final class Netty5ServerHandler extends SimpleChannelInboundHandler<Packe
     @Override
     protected void messageReceived(ChannelHandlerContext channelHandlerContext, Packet packet) throws Exception {
         if (packet instanceof AuthPacket authPacket) {
+            PacketRegistry.bind(channelHandlerContext.channel(), PacketRegistry.Mapping.of(authPacket.packetTypes()));
+            FrameCompressionHandler.enable(channelHandlerContext.channel(), authPacket.compression());
+            var sharedDictionaries = this.sharedDictionaries(authPacket);
+            FrameCompressionHandler.enableDictionaries(channelHandlerContext.channel(), sharedDictionaries);
             var netty5Channel = new Netty5ClientChannel(authPacket.identity(), channelHandlerContext.channel(), null);
             for (var filter : server.filters()) {
                 if (filter instanceof ConnectionFilter connectionFilter) {
@@ -51,7 +62,12 @@ public final class Netty5ServerHandler extends SimpleChannelInboundHandler<Packe
                     }
                 }
             }
-            var transmitter = new Netty5ClientPacketTransmitter(channelHandlerContext.channel().executor(), netty5Channel::sendPacket);
+            // the client only uses the dictionaries for its frames which the server holds as well
+            channelHandlerContext.channel().writeAndFlush(new SharedDictionariesPacket(sharedDictionaries));
+            var transmitter = new Netty5ClientPacketTransmitter(channelHandlerContext.channel().executor(), netty5Channel::sendPacket, netty5Channel::sendBundle);
+            transmitter.queryTimeoutMillis(server.channelOptions().queryTimeoutMillis());
+            transmitter.callbackExecutor(server.channelOptions().callbackExecutor());
+            transmitter.queryLimiter(server.channelOptions().newQueryLimiter());
             netty5Channel.transmitter(transmitter);
             for (var action : server.actions()) {
                 if (action instanceof ConnectionAction connectionAction &&
@@ -96,17 +112,56 @@ public final class Netty5ServerHandler extends SimpleChannelInboundHandler<Packe
         server.packetTransmitter().call(packet, sender);
     }
 
+    private int[] sharedDictionaries(AuthPacket authPacket) {
+        var shared = new IntArrayList();
+        for (var id : authPacket.dictionaries()) {
+            if (CompressionDictionary.byId(id) != null) {
+                shared.add(id);
+            } else {
+                System.err.println("Client " + authPacket.identity().name() + " uses compression dictionary " + id + ", which is not registered");
+            }
+        }
+        return shared.toArray();
+    }
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
         this.unauthenticated.put(ctx.channel().remoteAddress(), ctx.channel());
     }
 
+    @Override
+    public void channelInboundEvent(ChannelHandlerContext ctx, Object event) throws Exception {
+        if (!(event instanceof PacketBundle.Event bundleEvent)) {
+            ctx.fireChannelInboundEvent(event);
+            return;
+        }
+        for (var netty5ClientChannel : server.connections()) {
+            if (netty5ClientChannel.channel().equals(ctx.channel()) && netty5ClientChannel.transmitter() != null) {
+                if (bundleEvent == PacketBundle.Event.START) {
+                    netty5ClientChannel.transmitter().beginBundle();
+                } else {
+                    netty5ClientChannel.transmitter().endBundle();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        for (var netty5ClientChannel : server.connections()) {
+            if (netty5ClientChannel.channel().equals(ctx.channel())) {
+                netty5ClientChannel.transmitter().writabilityChanged(ctx.channel().isWritable());
+            }
+        }
+    }
+
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         this.unauthenticated.remove(ctx.channel().remoteAddress());
         var copy = new ArrayList<>(server.connections());
         for (var netty5ClientChannel : server.connections()) {
             if (netty5ClientChannel.channel().equals(ctx.channel())) {
+                netty5ClientChannel.transmitter().failPendingQueries(new ClosedChannelException());
                 for (var action : server.actions()) {
                     if (action instanceof ConnectionAction connectionAction &&
                             connectionAction.state().equals(ConnectionAction.State.CLIENT_DISCONNECTED)) {
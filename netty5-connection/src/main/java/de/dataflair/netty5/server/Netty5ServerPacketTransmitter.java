@@ -21,11 +21,15 @@ package de.dataflair.netty5.server;
 import de.dataflair.netty5.Netty5ClientChannel;
 import de.dataflair.netty5.TriConsumer;
 import de.dataflair.netty5.common.packet.*;
+import de.dataflair.netty5.common.packet.stream.StreamCreditPacket;
 import io.netty5.channel.EventLoopGroup;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 public final class Netty5ServerPacketTransmitter extends Netty5PacketTransmitter {
@@ -38,19 +42,43 @@ public final class Netty5ServerPacketTransmitter extends Netty5PacketTransmitter
         this.requestPacketConsumer = requestPacketConsumer;
     }
 
+    /**
+     * Not supported, as the responses arrive at the transmitter of the answering connection. Queries are sent with
+     * the transmitter of a connection, e.g. {@code server.connections().getFirst().transmitter()}. Every other query
+     * method of the server transmitter ends here as well.
+     *
+     * @throws UnsupportedOperationException always
+     */
     @Override
-    public <P extends Packet> CompletableFuture<Packet> queryPacket(@NotNull RequestPacket requestPacket, Class<P> packet) {
-        return null;
+    public <P extends Packet> CompletableFuture<Packet> queryPacket(@NotNull RequestPacket requestPacket, Class<P> packet,
+                                                                    long timeout, @NotNull TimeUnit unit) {
+        throw unsupportedQuery();
     }
 
+    /**
+     * Not supported, see {@link #queryPacket(RequestPacket, Class, long, TimeUnit)}.
+     *
+     * @throws UnsupportedOperationException always
+     */
     @Override
-    public <P extends Packet> P queryPacketDirect(@NotNull RequestPacket requestPacket, Class<P> packetClass) {
-        return null;
+    public @NotNull QueryBatch queryBatch(@NotNull List<? extends RequestPacket> requestPackets, long timeout,
+                                          @NotNull TimeUnit unit) {
+        throw unsupportedQuery();
     }
 
+    /**
+     * Not supported, see {@link #queryPacket(RequestPacket, Class, long, TimeUnit)}.
+     *
+     * @throws UnsupportedOperationException always
+     */
     @Override
-    public <P extends Packet> void queryPacket(@NotNull RequestPacket requestPacket, Class<P> packet, Consumer<P> callback) {
-        // todo send to every connected client
+    public <P extends RespondPacket> Flow.Publisher<P> queryStream(@NotNull RequestPacket requestPacket,
+                                                                  @NotNull Class<P> packetClass) {
+        throw unsupportedQuery();
+    }
+
+    private static UnsupportedOperationException unsupportedQuery() {
+        return new UnsupportedOperationException("Queries are sent with the transmitter of a connection, see Netty5ClientChannel#transmitter()");
     }
 
     public <R extends RequestPacket> void callResponder(@NotNull R request, @NotNull Netty5ClientChannel sender) {
@@ -58,8 +86,6 @@ public final class Netty5ServerPacketTransmitter extends Netty5PacketTransmitter
             responders().get(request.getClass()).forEach((_, respondPacketFunction) -> {
                 var respondPacket = respondPacketFunction.apply(request);
                 respondPacket.queryId(request.queryId());
-                respondPacket.buffer().writeUniqueId(request.queryId());
-                respondPacket.writeBuffer(respondPacket.buffer());
                 sender.transmitter().publishPacket(respondPacket);
             });
         } else {
@@ -69,29 +95,44 @@ public final class Netty5ServerPacketTransmitter extends Netty5PacketTransmitter
 
     @Override
     public void call(@NotNull Packet packet, @Nullable Netty5ClientChannel sender) {
-        if (packet instanceof RespondPacket respondPacket) {
-            if (directRequests().containsKey(respondPacket.queryId())) {
-                directRequests().put(respondPacket.queryId(), packet);
-            }
-            if (futureRequests().containsKey(respondPacket.queryId())) {
-                futureRequests().get(respondPacket.queryId()).accept(packet);
-                futureRequests().remove(respondPacket.queryId());
+        if (packet instanceof StreamCreditPacket creditPacket) {
+            if (sender != null && sender.transmitter() != null) {
+                sender.transmitter().creditResponseStream(creditPacket);
             }
+            return;
+        }
+
+        // queries are sent by the transmitter of the connection, which also owns their ids
+        if (packet instanceof RespondPacket respondPacket && sender != null && sender.transmitter() != null) {
+            sender.transmitter().completeQuery(respondPacket);
         }
 
-        if (packet instanceof RequestPacket requestPacket) {
-            if (sender != null) {
-                this.callResponder(requestPacket, sender);
-            } else {
-                throw new RuntimeException("Sender cannot be null by QueryPacket to Server");
+        var executor = sender != null && sender.transmitter() != null ? sender.transmitter().callbackExecutor() : null;
+        Runnable stream = null;
+        if (packet instanceof RequestPacket requestPacket && sender != null && sender.transmitter() != null) {
+            stream = this.openResponseStream(requestPacket, sender.transmitter());
+            if (stream == null) {
+                stream = sender.transmitter().openResponseStream(requestPacket, sender.transmitter());
             }
         }
+        var responseStream = stream;
+        this.dispatch(executor, packet, () -> {
+            if (responseStream != null) {
+                responseStream.run();
+            } else if (packet instanceof RequestPacket requestPacket) {
+                if (sender != null) {
+                    this.callResponder(requestPacket, sender);
+                } else {
+                    throw new RuntimeException("Sender cannot be null by QueryPacket to Server");
+                }
+            }
 
-        this.callActions(packet, sender);
+            this.callActions(packet, sender);
 
-        if (listener().containsKey(packet.getClass())) {
-            listener().get(packet.getClass()).forEach((_, packetConsumer) -> packetConsumer.accept(sender, packet));
-        }
+            if (listener().containsKey(packet.getClass())) {
+                listener().get(packet.getClass()).forEach((_, packetConsumer) -> packetConsumer.accept(sender, packet));
+            }
+        });
     }
 
     @Override
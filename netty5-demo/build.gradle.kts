@@ -9,4 +9,5 @@ dependencies {
     implementation(libs.gson)
     implementation(project(":netty5-connection"))
     annotationProcessor(libs.utility.lombok)
+    annotationProcessor(project(":netty5-processor"))
 }
\ No newline at end of file
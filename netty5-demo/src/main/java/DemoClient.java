@@ -16,11 +16,14 @@
 
 import de.dataflair.netty5.Netty5ClientChannel;
 import de.dataflair.netty5.client.Netty5Client;
+import de.dataflair.netty5.common.packet.PacketRegistry;
 
 import java.util.UUID;
 
 public class DemoClient {
     public static void main(String[] args) {
+        PacketRegistry.register(DemoPacket.class, DemoRequestPacket.class, DemoRespondPacket.class);
+
         var client = new Netty5Client("127.0.0.1", 8080,
                 new Netty5ClientChannel.Identity("Client-1", UUID.randomUUID()),
                 null);
@@ -15,13 +15,17 @@
  */
 
 import de.dataflair.netty5.common.codec.CodecBuffer;
+import de.dataflair.netty5.common.codec.Encode;
+import de.dataflair.netty5.common.codec.GenerateCodec;
 import de.dataflair.netty5.common.packet.RespondPacket;
 import lombok.Getter;
 import org.jetbrains.annotations.NotNull;
 
 @Getter
+@GenerateCodec
 public class DemoRespondPacket extends RespondPacket {
 
+    @Encode
     private String d;
 
     public DemoRespondPacket(String d) {
@@ -34,11 +38,16 @@ public class DemoRespondPacket extends RespondPacket {
 
     @Override
     public void writeBuffer(@NotNull CodecBuffer codecBuffer) {
-        codecBuffer.writeString(this.d);
+        DemoRespondPacketCodec.write(this, codecBuffer);
     }
 
     @Override
     public void readBuffer(@NotNull CodecBuffer codecBuffer) {
-        this.d = codecBuffer.readString();
+        DemoRespondPacketCodec.read(this, codecBuffer);
+    }
+
+    @Override
+    public int encodedSize(@NotNull CodecBuffer.Protocol protocol) {
+        return DemoRespondPacketCodec.size(this, protocol);
     }
 }
@@ -0,0 +1,7 @@
+plugins {
+    id("java")
+}
+
+dependencies {
+    compileOnly(libs.jetbrains.annotations)
+}
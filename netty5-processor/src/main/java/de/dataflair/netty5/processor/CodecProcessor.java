@@ -0,0 +1,489 @@
+package de.dataflair.netty5.processor;
+
+
+
+/*
+ * Copyright 2023-2024 netty5-api contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates the {@code <Name>Codec} classes for types annotated with
+ * {@code de.dataflair.netty5.common.codec.GenerateCodec}.
+ * <p>
+ * The generated code calls the {@code CodecBuffer} methods of every field directly, in declaration order, and
+ * computes the exact encoded size without touching a buffer. Private fields are accessed through a
+ * {@link java.lang.invoke.VarHandle} of the codec, which the JIT folds like a field access. The processor only
+ * refers to the API by name, so it has no dependency on the connection module.
+ */
+@SupportedAnnotationTypes(CodecProcessor.GENERATE_CODEC)
+public final class CodecProcessor extends AbstractProcessor {
+    static final String GENERATE_CODEC = "de.dataflair.netty5.common.codec.GenerateCodec";
+    private static final String ENCODE = "de.dataflair.netty5.common.codec.Encode";
+    private static final String CODEC_BUFFER = "de.dataflair.netty5.common.codec.CodecBuffer";
+    private static final String WRITE_READ_STREAM = CODEC_BUFFER + ".WriteReadStream";
+    private static final String INT_ARRAY_LIST = "de.dataflair.netty5.common.collection.IntArrayList";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (var annotation : annotations) {
+            for (var element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    this.error(element, "@GenerateCodec is only supported on classes");
+                    continue;
+                }
+                this.generate((TypeElement) element);
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) {
+        var fields = new ArrayList<Field>();
+        for (var field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            var encode = this.annotation(field, ENCODE);
+            if (encode == null) {
+                continue;
+            }
+            var modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.FINAL)) {
+                this.error(field, "@Encode fields must not be static or final");
+                continue;
+            }
+            var kind = this.kind(field.asType());
+            if (kind == null) {
+                this.error(field, "Unsupported @Encode type: " + field.asType());
+                continue;
+            }
+            var nullable = this.nullable(encode);
+            if (nullable && field.asType().getKind().isPrimitive()) {
+                this.error(field, "Primitive @Encode fields cannot be nullable");
+                continue;
+            }
+            if (kind == Kind.STREAM && !this.hasNoArgsConstructor(field.asType())) {
+                this.error(field, "@Encode streams need a non-private no-args constructor");
+                continue;
+            }
+            fields.add(new Field(field.getSimpleName().toString(), field.asType(), kind, nullable, modifiers.contains(Modifier.PRIVATE)));
+        }
+
+        var packageName = this.processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        var binaryName = this.processingEnv.getElementUtils().getBinaryName(type).toString();
+        var codecName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)).replace('$', '_') + "Codec";
+        var source = this.source(packageName, codecName, type.getQualifiedName().toString(), fields);
+
+        try (var writer = this.processingEnv.getFiler()
+                .createSourceFile(packageName.isEmpty() ? codecName : packageName + "." + codecName, type)
+                .openWriter()) {
+            writer.write(source);
+        } catch (IOException e) {
+            this.error(type, "Could not write " + codecName + ": " + e.getMessage());
+        }
+    }
+
+    private String source(String packageName, String codecName, String typeName, List<Field> fields) {
+        var enumValues = new LinkedHashMap<String, String>();
+        for (var field : fields) {
+            if (field.kind() == Kind.ENUM) {
+                var enumType = this.erasure(field.type());
+                enumValues.putIfAbsent(enumType, enumType.replace('.', '_').toUpperCase() + "_VALUES");
+            }
+        }
+
+        var out = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        out.append("@javax.annotation.processing.Generated(\"").append(CodecProcessor.class.getName()).append("\")\n");
+        out.append("public final class ").append(codecName).append(" {\n");
+        // values() clones the array on every call, so the constants are cached once
+        enumValues.forEach((enumType, constant) -> out.append("    private static final ").append(enumType)
+                .append("[] ").append(constant).append(" = ").append(enumType).append(".values();\n"));
+        var handles = fields.stream().filter(Field::hidden).toList();
+        handles.forEach(field -> out.append("    private static final java.lang.invoke.VarHandle ").append(field.handle()).append(";\n"));
+        if (!enumValues.isEmpty() || !handles.isEmpty()) {
+            out.append('\n');
+        }
+        if (!handles.isEmpty()) {
+            // the codec shares the package and module of the type, so it may look into its private fields
+            out.append("    static {\n");
+            out.append("        try {\n");
+            out.append("            var lookup = java.lang.invoke.MethodHandles.privateLookupIn(").append(typeName)
+                    .append(".class, java.lang.invoke.MethodHandles.lookup());\n");
+            for (var field : handles) {
+                out.append("            ").append(field.handle()).append(" = lookup.findVarHandle(").append(typeName)
+                        .append(".class, \"").append(field.name()).append("\", ").append(this.erasure(field.type())).append(".class);\n");
+            }
+            out.append("        } catch (ReflectiveOperationException e) {\n");
+            out.append("            throw new ExceptionInInitializerError(e);\n");
+            out.append("        }\n");
+            out.append("    }\n\n");
+        }
+        out.append("    private ").append(codecName).append("() {\n    }\n\n");
+
+        out.append("    public static void write(").append(typeName).append(" packet, ").append(CODEC_BUFFER).append(" buffer) {\n");
+        for (var field : fields) {
+            this.appendWrite(out, field);
+        }
+        out.append("    }\n\n");
+
+        out.append("    public static void read(").append(typeName).append(" packet, ").append(CODEC_BUFFER).append(" buffer) {\n");
+        for (var field : fields) {
+            this.appendRead(out, field, enumValues);
+        }
+        out.append("    }\n\n");
+
+        out.append("    public static int size(").append(typeName).append(" packet, ").append(CODEC_BUFFER).append(".Protocol protocol) {\n");
+        var fixedSize = 0;
+        for (var field : fields) {
+            if (field.kind().fixedSize > 0 && !field.nullable()) {
+                fixedSize += field.kind().fixedSize;
+            }
+        }
+        out.append("        var size = ").append(fixedSize).append(";\n");
+        for (var field : fields) {
+            if (field.kind().fixedSize == 0 || field.nullable()) {
+                this.appendSize(out, field);
+            }
+        }
+        out.append("        return size;\n    }\n}\n");
+        return out.toString();
+    }
+
+    private void appendWrite(StringBuilder out, Field field) {
+        var value = field.name() + "Value";
+        out.append("        var ").append(value).append(" = ").append(this.get(field)).append(";\n");
+        var indent = "        ";
+        if (field.nullable()) {
+            out.append("        buffer.writeBoolean(").append(value).append(" != null);\n");
+            out.append("        if (").append(value).append(" != null) {\n");
+            indent = "            ";
+        }
+
+        switch (field.kind()) {
+            case STRING -> out.append(indent).append("buffer.writeString(").append(value).append(");\n");
+            case ENUM -> out.append(indent).append("buffer.writeLength(").append(value).append(".ordinal());\n");
+            case INT_LIST -> out.append(indent).append("buffer.writeIntList(").append(value).append(");\n");
+            case STRING_LIST, UNIQUE_ID_LIST -> {
+                out.append(indent).append("buffer.writeLength(").append(value).append(".size());\n");
+                out.append(indent).append("for (var element : ").append(value).append(") {\n");
+                out.append(indent).append("    buffer.write").append(field.kind() == Kind.STRING_LIST ? "String" : "UniqueId").append("(element);\n");
+                out.append(indent).append("}\n");
+            }
+            case STREAM -> out.append(indent).append(value).append(".writeBuffer(buffer);\n");
+            default -> out.append(indent).append("buffer.write").append(field.kind().method).append("(").append(value).append(");\n");
+        }
+
+        if (field.nullable()) {
+            out.append("        }\n");
+        }
+    }
+
+    private void appendRead(StringBuilder out, Field field, Map<String, String> enumValues) {
+        var indent = "        ";
+        if (field.nullable()) {
+            out.append("        if (buffer.readBoolean()) {\n");
+            indent = "            ";
+        }
+
+        switch (field.kind()) {
+            case STRING -> out.append(indent).append(this.set(field, "buffer.readString()"));
+            case ENUM -> out.append(indent).append(this.set(field, enumValues.get(this.erasure(field.type())) + "[buffer.readLength()]"));
+            case INT_LIST -> out.append(indent).append(this.set(field, "buffer.readIntList(new " + INT_ARRAY_LIST + "())"));
+            case STRING_LIST, UNIQUE_ID_LIST -> {
+                var elementType = field.kind() == Kind.STRING_LIST ? "java.lang.String" : "java.util.UUID";
+                var length = field.name() + "Length";
+                var list = field.name() + "Value";
+                out.append(indent).append("var ").append(length).append(" = buffer.readLength();\n");
+                // the length is not trusted for the initial capacity, every element takes at least one byte
+                out.append(indent).append("var ").append(list).append(" = new java.util.ArrayList<").append(elementType)
+                        .append(">(Math.min(").append(length).append(", buffer.origin().readableBytes()));\n");
+                out.append(indent).append("for (var i = 0; i < ").append(length).append("; i++) {\n");
+                out.append(indent).append("    ").append(list).append(".add(buffer.read")
+                        .append(field.kind() == Kind.STRING_LIST ? "String" : "UniqueId").append("());\n");
+                out.append(indent).append("}\n");
+                out.append(indent).append(this.set(field, list));
+            }
+            case STREAM -> {
+                var value = field.name() + "Value";
+                out.append(indent).append("var ").append(value).append(" = new ").append(this.typeName(field.type())).append("();\n");
+                out.append(indent).append(value).append(".readBuffer(buffer);\n");
+                out.append(indent).append(this.set(field, value));
+            }
+            default -> out.append(indent).append(this.set(field, "buffer.read" + field.kind().method + "()"));
+        }
+
+        if (field.nullable()) {
+            out.append("        } else {\n");
+            out.append("            ").append(this.set(field, "null"));
+            out.append("        }\n");
+        }
+    }
+
+    private String get(Field field) {
+        if (!field.hidden()) {
+            return "packet." + field.name();
+        }
+        // the cast makes the call exact, so no conversion of the handle is involved
+        return "(" + this.typeName(field.type()) + ") " + field.handle() + ".get(packet)";
+    }
+
+    private String set(Field field, String value) {
+        if (!field.hidden()) {
+            return "packet." + field.name() + " = " + value + ";\n";
+        }
+        // lists are read into an ArrayList and null has no type, the cast keeps the call exact
+        if (value.equals("null") || field.kind() == Kind.STRING_LIST || field.kind() == Kind.UNIQUE_ID_LIST) {
+            value = "(" + this.typeName(field.type()) + ") " + value;
+        }
+        return field.handle() + ".set(packet, " + value + ");\n";
+    }
+
+    private void appendSize(StringBuilder out, Field field) {
+        var value = field.name() + "Value";
+        out.append("        var ").append(value).append(" = ").append(this.get(field)).append(";\n");
+        var indent = "        ";
+        if (field.nullable()) {
+            out.append("        size += 1;\n");
+            out.append("        if (").append(value).append(" != null) {\n");
+            indent = "            ";
+        }
+
+        switch (field.kind()) {
+            case STRING -> {
+                var length = field.name() + "Length";
+                out.append(indent).append("var ").append(length).append(" = ").append(CODEC_BUFFER).append(".utf8Length(").append(value).append(");\n");
+                out.append(indent).append("size += protocol.lengthSize(").append(length).append(") + ").append(length).append(";\n");
+            }
+            case ENUM -> out.append(indent).append("size += protocol.lengthSize(").append(value).append(".ordinal());\n");
+            case INT_ARRAY, LONG_ARRAY, FLOAT_ARRAY, DOUBLE_ARRAY, BYTE_ARRAY -> out.append(indent)
+                    .append("size += protocol.lengthSize(").append(value).append(".length) + ").append(value)
+                    .append(".length * ").append(field.kind().elementSize).append(";\n");
+            case BOOLEAN_ARRAY -> out.append(indent).append("size += protocol.lengthSize(").append(value).append(".length) + (")
+                    .append(value).append(".length + 7) / 8;\n");
+            case INT_LIST, UNIQUE_ID_LIST -> out.append(indent).append("size += protocol.lengthSize(").append(value)
+                    .append(".size()) + ").append(value).append(".size() * ").append(field.kind().elementSize).append(";\n");
+            case STRING_LIST -> {
+                out.append(indent).append("size += protocol.lengthSize(").append(value).append(".size());\n");
+                out.append(indent).append("for (var element : ").append(value).append(") {\n");
+                out.append(indent).append("    var elementLength = ").append(CODEC_BUFFER).append(".utf8Length(element);\n");
+                out.append(indent).append("    size += protocol.lengthSize(elementLength) + elementLength;\n");
+                out.append(indent).append("}\n");
+            }
+            case STREAM -> {
+                var size = field.name() + "Size";
+                out.append(indent).append("var ").append(size).append(" = ").append(value).append(".encodedSize(protocol);\n");
+                out.append(indent).append("if (").append(size).append(" < 0) {\n");
+                out.append(indent).append("    return -1;\n");
+                out.append(indent).append("}\n");
+                out.append(indent).append("size += ").append(size).append(";\n");
+            }
+            default -> out.append(indent).append("size += ").append(field.kind().fixedSize).append(";\n");
+        }
+
+        if (field.nullable()) {
+            out.append("        }\n");
+        }
+    }
+
+    private Kind kind(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN: return Kind.BOOLEAN;
+            case BYTE: return Kind.BYTE;
+            case SHORT: return Kind.SHORT;
+            case CHAR: return Kind.CHAR;
+            case INT: return Kind.INT;
+            case LONG: return Kind.LONG;
+            case FLOAT: return Kind.FLOAT;
+            case DOUBLE: return Kind.DOUBLE;
+            case ARRAY:
+                return switch (((ArrayType) type).getComponentType().getKind()) {
+                    case INT -> Kind.INT_ARRAY;
+                    case LONG -> Kind.LONG_ARRAY;
+                    case FLOAT -> Kind.FLOAT_ARRAY;
+                    case DOUBLE -> Kind.DOUBLE_ARRAY;
+                    case BYTE -> Kind.BYTE_ARRAY;
+                    case BOOLEAN -> Kind.BOOLEAN_ARRAY;
+                    default -> null;
+                };
+            case DECLARED:
+                break;
+            default:
+                return null;
+        }
+
+        var declared = (DeclaredType) type;
+        var element = (TypeElement) declared.asElement();
+        if (element.getKind() == ElementKind.ENUM) {
+            return Kind.ENUM;
+        }
+        switch (element.getQualifiedName().toString()) {
+            case "java.lang.String": return Kind.STRING;
+            case "java.util.UUID": return Kind.UNIQUE_ID;
+            case INT_ARRAY_LIST: return Kind.INT_LIST;
+            case "java.util.List":
+                if (declared.getTypeArguments().size() == 1) {
+                    var argument = this.erasure(declared.getTypeArguments().getFirst());
+                    if (argument.equals("java.lang.String")) {
+                        return Kind.STRING_LIST;
+                    }
+                    if (argument.equals("java.util.UUID")) {
+                        return Kind.UNIQUE_ID_LIST;
+                    }
+                }
+                return null;
+            default:
+                break;
+        }
+
+        var stream = this.processingEnv.getElementUtils().getTypeElement(WRITE_READ_STREAM);
+        if (stream != null && this.processingEnv.getTypeUtils().isAssignable(type, stream.asType())
+                && !element.getModifiers().contains(Modifier.ABSTRACT)) {
+            return Kind.STREAM;
+        }
+        return null;
+    }
+
+    private boolean hasNoArgsConstructor(TypeMirror type) {
+        var element = ((DeclaredType) type).asElement();
+        for (var constructor : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String erasure(TypeMirror type) {
+        return this.typeName(this.processingEnv.getTypeUtils().erasure(type));
+    }
+
+    /**
+     * Returns the source name of the type without its type annotations, which are not allowed everywhere a type
+     * is named, e.g. in class literals.
+     */
+    private String typeName(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return type.getKind().name().toLowerCase();
+        }
+        if (type instanceof ArrayType array) {
+            return this.typeName(array.getComponentType()) + "[]";
+        }
+        if (type instanceof DeclaredType declared) {
+            var name = ((TypeElement) declared.asElement()).getQualifiedName().toString();
+            if (declared.getTypeArguments().isEmpty()) {
+                return name;
+            }
+            var arguments = new ArrayList<String>();
+            for (var argument : declared.getTypeArguments()) {
+                arguments.add(this.typeName(argument));
+            }
+            return name + "<" + String.join(", ", arguments) + ">";
+        }
+        return type.toString();
+    }
+
+    private AnnotationMirror annotation(Element element, String name) {
+        for (var mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(name)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private boolean nullable(AnnotationMirror encode) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : encode.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals("nullable")) {
+                return (Boolean) entry.getValue().getValue();
+            }
+        }
+        return false;
+    }
+
+    private void error(Element element, String message) {
+        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private enum Kind {
+        BOOLEAN("Boolean", 1, 0),
+        BYTE("Byte", 1, 0),
+        SHORT("Short", 2, 0),
+        CHAR("Char", 2, 0),
+        INT("Int", 4, 0),
+        LONG("Long", 8, 0),
+        FLOAT("Float", 4, 0),
+        DOUBLE("Double", 8, 0),
+        UNIQUE_ID("UniqueId", 16, 0),
+        STRING("String", 0, 0),
+        ENUM("Enum", 0, 0),
+        INT_ARRAY("IntArray", 0, 4),
+        LONG_ARRAY("LongArray", 0, 8),
+        FLOAT_ARRAY("FloatArray", 0, 4),
+        DOUBLE_ARRAY("DoubleArray", 0, 8),
+        BYTE_ARRAY("ByteArray", 0, 1),
+        BOOLEAN_ARRAY("BooleanArray", 0, 0),
+        INT_LIST("IntList", 0, 4),
+        STRING_LIST("StringList", 0, 0),
+        UNIQUE_ID_LIST("UniqueIdList", 0, 16),
+        STREAM("Stream", 0, 0);
+
+        private final String method;
+        private final int fixedSize;
+        private final int elementSize;
+
+        Kind(String method, int fixedSize, int elementSize) {
+            this.method = method;
+            this.fixedSize = fixedSize;
+            this.elementSize = elementSize;
+        }
+    }
+
+    /**
+     * @param hidden whether the field is private and accessed through a handle
+     */
+    private record Field(String name, TypeMirror type, Kind kind, boolean nullable, boolean hidden) {
+        private String handle() {
+            return this.name.toUpperCase() + "_HANDLE";
+        }
+    }
+}
@@ -1,3 +1,4 @@
 rootProject.name = "netty5-api"
 include("netty5-connection")
+include("netty5-processor")
 include("netty5-demo")